@@ -0,0 +1,99 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import peltomaa.javatre.AparamsBuilder;
+import peltomaa.javatre.Matcher;
+import peltomaa.javatre.RE;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Steady-state matching of short strings, for checking that a match
+ *  allocates nothing on the Java heap. Run with the GC profiler:
+ *  <pre>
+ *  java -jar target/benchmarks.jar AllocationBenchmark -prof gc
+ *  </pre>
+ *  {@code gc.alloc.rate.norm} should be (close to) 0 bytes per operation
+ *  for every benchmark. {@code wmatch} only asks whether the string
+ *  matches, so the offsets are never read from native memory;
+ *  {@code findOffsets} reads them with one bulk read.
+ */
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+@State (Scope.Thread)
+public class AllocationBenchmark {
+  RE exact;
+  RE fuzzy;
+  Matcher exactMatcher;
+  Matcher fuzzyMatcher;
+  String text;
+
+
+  @Setup
+  public void setUp()
+  {
+    exact = RE.compile ("(needle)([0-9]+)", REG_EXTENDED);
+    fuzzy = RE.compile (Inputs.NEEDLE_FUZZY, REG_EXTENDED, AparamsBuilder.build1());
+    exactMatcher = exact.matcher ("");
+    fuzzyMatcher = fuzzy.matcher ("");
+    text = "some words and a needle42 in the middle";
+  }
+
+
+  @TearDown
+  public void tearDown()
+  {
+    exact.regfree();
+    fuzzy.regfree();
+  }
+
+
+  @Benchmark
+  public boolean wmatchExact()
+  {
+    return exact.wmatch (text);
+  }
+
+
+  @Benchmark
+  public boolean wmatchFuzzy()
+  {
+    return fuzzy.wmatch (text);
+  }
+
+
+  @Benchmark
+  public int findOffsets()
+  {
+    exactMatcher.reset (text, 0);
+    return exactMatcher.find() ? exactMatcher.start (1) + exactMatcher.end (2) : -1;
+  }
+
+
+  @Benchmark
+  public int findFuzzyOffsets()
+  {
+    fuzzyMatcher.reset (text, 0);
+    return fuzzyMatcher.find() ? fuzzyMatcher.start() + fuzzyMatcher.end() : -1;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/** Runs the benchmarks with the GC profiler (allocation rate and bytes
+ *  allocated per operation) once for each thread count 1, 2, 4, ... N,
+ *  and prints how the throughput scales with the number of threads.<p>
+ *
+ *  Usage:
+ *  <pre>
+ *  java -cp target/benchmarks.jar peltomaa.javatre.benchmarks.BenchmarkMain [regexp [N]]
+ *  </pre>
+ *  {@code regexp} selects the benchmarks (default: all of them) and
+ *  {@code N} is the maximum number of threads (default: number of processors).
+ */
+public class BenchmarkMain {
+  public static void main (String[] args) throws RunnerException
+  {
+    final String include = (args.length > 0) ? args[0] : "peltomaa.javatre.benchmarks.*";
+    final int maxThreads = (args.length > 1) ? Integer.parseInt (args[1])
+                                             : Runtime.getRuntime().availableProcessors();
+
+    // Benchmark label -> throughput for each thread count.
+    Map<String,List<double[]>> scaling = new LinkedHashMap<>();
+
+    for (int threads : threadCounts (maxThreads)) {
+      Options options = new OptionsBuilder()
+        .include (include)
+        .mode (Mode.Throughput)
+        .timeUnit (TimeUnit.SECONDS)
+        .threads (threads)
+        .addProfiler (GCProfiler.class)
+        .build();
+
+      Collection<RunResult> results = new Runner (options).run();
+      for (RunResult r : results) {
+        final String label = r.getParams().getBenchmark() + paramString (r);
+        scaling.computeIfAbsent (label, k -> new ArrayList<>())
+               .add (new double[] {threads, r.getPrimaryResult().getScore()});
+      }
+    }
+
+    System.out.println();
+    System.out.println ("Throughput scaling (ops/s, and relative to 1 thread):");
+    for (Map.Entry<String,List<double[]>> e : scaling.entrySet()) {
+      System.out.println (e.getKey());
+      final double base = e.getValue().get(0)[1];
+      for (double[] d : e.getValue()) {
+        System.out.printf ("  %3d threads %14.1f ops/s %7.2fx%n", (int)d[0], d[1], d[1] / base);
+      }
+    }
+  }
+
+
+  private static List<Integer> threadCounts (int max)
+  {
+    List<Integer> list = new ArrayList<>();
+    for (int t = 1; t < max; t *= 2) {
+      list.add (t);
+    }
+    list.add (max);
+    return list;
+  }
+
+
+  private static String paramString (RunResult r)
+  {
+    StringBuilder sb = new StringBuilder();
+    for (String key : r.getParams().getParamsKeys()) {
+      sb.append (' ').append (key).append ('=').append (r.getParams().getParam (key));
+    }
+    return sb.toString();
+  }
+}
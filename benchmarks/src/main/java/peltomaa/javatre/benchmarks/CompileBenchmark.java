@@ -0,0 +1,80 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+import peltomaa.javatre.AparamsBuilder;
+import peltomaa.javatre.RE;
+import peltomaa.javatre.TRE;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Cost of {@code RE.compile} for ordinary and fuzzy regular expressions,
+ *  with {@code java.util.regex.Pattern.compile} as a baseline.<p>
+ *
+ *  Every compiled regex is freed at once, so that the benchmark does not
+ *  measure a growing native heap.
+ */
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+@State (Scope.Thread)
+public class CompileBenchmark {
+  @Param ({"kukka", "ERROR .* timeout", "[a-z]+@[a-z]+\\.(com|org|net)", "(a|b)*c{2,5}(d|e)+"})
+  public String regex;
+
+  private TRE.regaparams_t.ByValue params;
+
+
+  @Setup
+  public void setUp()
+  {
+    params = AparamsBuilder.build1();
+  }
+
+
+  @Benchmark
+  public int compileExact()
+  {
+    RE re = RE.compile (regex, REG_EXTENDED);
+    final int n = re.cflags();
+    re.regfree();
+    return n;
+  }
+
+
+  @Benchmark
+  public int compileFuzzy()
+  {
+    RE re = RE.compile (regex, REG_EXTENDED, params);
+    final int n = re.cflags();
+    re.regfree();
+    return n;
+  }
+
+
+  @Benchmark
+  public Pattern compileJdk()
+  {
+    return Pattern.compile (regex);
+  }
+}
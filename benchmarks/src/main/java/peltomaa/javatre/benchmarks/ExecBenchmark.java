@@ -0,0 +1,110 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+import peltomaa.javatre.AparamsBuilder;
+import peltomaa.javatre.RE;
+import static peltomaa.javatre.TRE.*;
+
+
+/** One {@code wexec} call over the whole input, for ordinary
+ *  ({@code tre_regwexec}) and fuzzy ({@code tre_regawexec}) regular
+ *  expressions, and for a fuzzy {@code REG_LITERAL | REG_NOSUB} pattern
+ *  that is matched in Java. The only match is at the end of the input, so that
+ *  the whole input is scanned. The baseline is
+ *  {@code java.util.regex.Matcher.find()}.
+ */
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class ExecBenchmark {
+  /** Input shared by all threads. */
+  @State (Scope.Benchmark)
+  public static class Input {
+    @Param ({"100", "10K", "1M", "10M"})
+    public String size;
+
+    String text;
+
+    @Setup
+    public void setUp()
+    {
+      text = Inputs.textWithNeedleAtEnd (Inputs.parseSize (size));
+    }
+  }
+
+
+  /** Compiled regular expressions, one set per thread. */
+  @State (Scope.Thread)
+  public static class Regexes {
+    RE exact;
+    RE fuzzy;
+    RE fuzzyLiteral;
+    Pattern jdk;
+
+    @Setup
+    public void setUp()
+    {
+      exact = RE.compile (Inputs.NEEDLE_REGEX, REG_EXTENDED);
+      fuzzy = RE.compile (Inputs.NEEDLE_FUZZY, REG_EXTENDED, AparamsBuilder.build1());
+      fuzzyLiteral = RE.compile (Inputs.NEEDLE_FUZZY, REG_LITERAL | REG_NOSUB, AparamsBuilder.build1());
+      jdk = Pattern.compile (Inputs.NEEDLE_REGEX);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+      exact.regfree();
+      fuzzy.regfree();
+      fuzzyLiteral.regfree();
+    }
+  }
+
+
+  @Benchmark
+  public int wexecExact (Input in, Regexes r)
+  {
+    return r.exact.wexec (in.text, 0);
+  }
+
+
+  @Benchmark
+  public int wexecFuzzy (Input in, Regexes r)
+  {
+    return r.fuzzy.wexec (in.text, 0);
+  }
+
+
+  @Benchmark
+  public int wexecFuzzyLiteral (Input in, Regexes r)
+  {
+    return r.fuzzyLiteral.wexec (in.text, 0);
+  }
+
+
+  @Benchmark
+  public boolean findJdk (Input in, Regexes r)
+  {
+    return r.jdk.matcher (in.text).find();
+  }
+}
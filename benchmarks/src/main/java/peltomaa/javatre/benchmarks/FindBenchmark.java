@@ -0,0 +1,168 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+import peltomaa.javatre.AparamsBuilder;
+import peltomaa.javatre.Matcher;
+import peltomaa.javatre.RE;
+import peltomaa.javatre.Replacer;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Operations that match a regex many times over one input:
+ *  a {@link Matcher#find()} loop, replacing every match with
+ *  {@link Matcher#appendReplacement} and {@link Matcher#appendTail},
+ *  with a {@link Replacer} parsed once and with a function,
+ *  and {@link RE#split}. Every operation has a
+ *  {@code java.util.regex} baseline.
+ */
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class FindBenchmark {
+  /** Input shared by all threads. */
+  @State (Scope.Benchmark)
+  public static class Input {
+    @Param ({"100", "10K", "1M"})
+    public String size;
+
+    String text;
+
+    @Setup
+    public void setUp()
+    {
+      text = Inputs.logText (Inputs.parseSize (size));
+    }
+  }
+
+
+  /** Compiled regular expressions, one set per thread. */
+  @State (Scope.Thread)
+  public static class Regexes {
+    RE exact;
+    RE fuzzy;
+    RE newline;
+    Pattern jdk;
+    Pattern jdkNewline;
+    Replacer replacer;
+
+    @Setup
+    public void setUp()
+    {
+      exact = RE.compile (Inputs.ERROR_REGEX, REG_EXTENDED);
+      fuzzy = RE.compile ("timeuot", REG_EXTENDED, AparamsBuilder.build1());
+      newline = RE.compile ("\n", REG_EXTENDED);
+      jdk = Pattern.compile (Inputs.ERROR_REGEX);
+      jdkNewline = Pattern.compile ("\n");
+      replacer = exact.replacer ("[$0]");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+      exact.regfree();
+      fuzzy.regfree();
+      newline.regfree();
+    }
+  }
+
+
+  @Benchmark
+  public int findExact (Input in, Regexes r)
+  {
+    return count (r.exact.matcher (in.text));
+  }
+
+
+  @Benchmark
+  public int findFuzzy (Input in, Regexes r)
+  {
+    return count (r.fuzzy.matcher (in.text));
+  }
+
+
+  @Benchmark
+  public int findJdk (Input in, Regexes r)
+  {
+    java.util.regex.Matcher m = r.jdk.matcher (in.text);
+    int n = 0;
+    while (m.find()) n++;
+    return n;
+  }
+
+
+  @Benchmark
+  public String replaceExact (Input in, Regexes r)
+  {
+    Matcher m = r.exact.matcher (in.text);
+    StringBuffer sb = new StringBuffer();
+    while (m.find()) {
+      m.appendReplacement (sb, "[$0]");
+    }
+    m.appendTail (sb);
+    return sb.toString();
+  }
+
+
+  @Benchmark
+  public String replaceTemplate (Input in, Regexes r)
+  {
+    return r.replacer.replaceAll (in.text);
+  }
+
+
+  @Benchmark
+  public String replaceFunction (Input in, Regexes r)
+  {
+    return r.exact.matcher (in.text).replaceAll (m -> "[" + m.group() + "]");
+  }
+
+
+  @Benchmark
+  public String replaceJdk (Input in, Regexes r)
+  {
+    return r.jdk.matcher (in.text).replaceAll ("[$0]");
+  }
+
+
+  @Benchmark
+  public String[] splitExact (Input in, Regexes r)
+  {
+    return r.newline.split (in.text, 0, 0);
+  }
+
+
+  @Benchmark
+  public String[] splitJdk (Input in, Regexes r)
+  {
+    return r.jdkNewline.split (in.text);
+  }
+
+
+  private static int count (Matcher m)
+  {
+    int n = 0;
+    while (m.find()) n++;
+    return n;
+  }
+}
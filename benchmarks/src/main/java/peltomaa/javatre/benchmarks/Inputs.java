@@ -0,0 +1,111 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre.benchmarks;
+
+import java.util.Random;
+
+
+/** Deterministic test input for the benchmarks.<p>
+ *
+ * The text looks like a log file: most lines are ordinary INFO lines
+ * and every 50th line is an ERROR line that contains the word "timeout".
+ * The same seed is always used, so that the numbers of different runs
+ * can be compared.
+ */
+final class Inputs {
+  private Inputs() {}
+
+
+  /** Returns a log-like text of exactly {@code size} characters.
+   *
+   * @param size Length of the text.
+   */
+  static String logText (int size)
+  {
+    final Random random = new Random (20180301L);
+    final StringBuilder sb = new StringBuilder (size + 100);
+    int line = 0;
+
+    while (sb.length() < size) {
+      if (++line % 50 == 0) {
+        sb.append ("2018-03-01 12:").append (two (line / 60 % 60)).append (':').append (two (line % 60))
+          .append (" ERROR worker-").append (random.nextInt (16))
+          .append (" request ").append (random.nextInt (100000))
+          .append (" failed: read timeout after ").append (random.nextInt (5000)).append (" ms\n");
+      }
+      else {
+        sb.append ("2018-03-01 12:").append (two (line / 60 % 60)).append (':').append (two (line % 60))
+          .append (" INFO  worker-").append (random.nextInt (16))
+          .append (" request ").append (random.nextInt (100000))
+          .append (' ').append (WORDS[random.nextInt (WORDS.length)])
+          .append (" in ").append (random.nextInt (500)).append (" ms\n");
+      }
+    }
+    sb.setLength (size);
+    return sb.toString();
+  }
+
+
+  /** Returns a log-like text of {@code size} characters whose only match
+   *  for {@link #NEEDLE_REGEX} is at the very end, so that a search has to
+   *  scan the whole text.
+   *
+   * @param size Length of the text.
+   */
+  static String textWithNeedleAtEnd (int size)
+  {
+    final String needle = "needle4711";
+    final String text = logText (Math.max (0, size - needle.length()));
+    return text + needle;
+  }
+
+
+  /** Parses a size with an optional K or M suffix, e.g. "100", "10K", "10M".
+   *
+   * @param s Size as a string.
+   */
+  static int parseSize (String s)
+  {
+    final char last = s.charAt (s.length() - 1);
+    switch (last) {
+      case 'K': return Integer.parseInt (s.substring (0, s.length() - 1)) * 1024;
+      case 'M': return Integer.parseInt (s.substring (0, s.length() - 1)) * 1024 * 1024;
+      default:  return Integer.parseInt (s);
+    }
+  }
+
+
+  private static String two (int n)
+  {
+    return (n < 10) ? "0" + n : Integer.toString (n);
+  }
+
+
+  /** Matches the needle of {@link #textWithNeedleAtEnd(int)}. */
+  static final String NEEDLE_REGEX = "needle[0-9]+";
+
+  /** Approximately matches the needle of {@link #textWithNeedleAtEnd(int)}. */
+  static final String NEEDLE_FUZZY = "neeble";
+
+  /** Matches every ERROR line. */
+  static final String ERROR_REGEX = "ERROR [^\n]*timeout";
+
+  private static final String[] WORDS = {
+    "served", "accepted", "queued", "forwarded", "cached", "retried", "stored", "rejected"
+  };
+}
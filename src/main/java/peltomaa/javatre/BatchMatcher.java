@@ -0,0 +1,101 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+
+/** Matches many strings to one regular expression.<p>
+ *
+ *  The strings are copied one after another to one native buffer, at most
+ *  about {@link #ARENA} chars at a time, and each string is matched in place
+ *  with a separate call of {@code tre_regwnexec} or {@code tre_regawnexec},
+ *  without any other marshalling. The results go to the arrays of a
+ *  {@link BatchResult}.<p>
+ *
+ *  This class is not thread safe. {@link #matchParallel} uses one
+ *  {@code BatchMatcher} for each part of the strings.
+ */
+final class BatchMatcher {
+  /** Number of chars copied to native memory at a time. */
+  static final int ARENA = 1 << 16;
+
+
+  BatchMatcher (RE re, MatchData md)
+  {
+    this.re = re;
+    this.md = md;
+  }
+
+
+  /** Matches {@code strings[from..to)} and puts the results to {@code result}. */
+  void match (List<? extends CharSequence> strings, int from, int to, int eflags, BatchResult result)
+  {
+    final NativeSubject subject = md.subject;
+    int i = from;
+    while (i < to) {
+      // Take strings until the arena is full, but at least one.
+      int j = i;
+      int chars = 0;
+      do {
+        chars += strings.get (j++).length();
+      } while (j < to && chars + strings.get (j).length() <= ARENA);
+
+      if (starts.length < j - i + 1) {
+        starts = new int[Math.max (j - i + 1, 2 * starts.length)];
+      }
+      subject.set (strings, i, j, starts);
+
+      for (int k = i; k < j; k++) {
+        final int ws = starts[k - i];
+        if (re.mayMatch (strings.get (k), 0) && re.matchResult (re.exec (md, ws, starts[k - i + 1], eflags))) {
+          final int base = subject.toChar (ws);
+          result.start[k] = md.start (0) - base;
+          result.end[k] = md.end (0) - base;
+          if (result.cost != null) result.cost[k] = md.cost();
+        }
+        else {
+          result.start[k] = -1;
+          result.end[k] = -1;
+        }
+      }
+      i = j;
+    }
+  }
+
+
+  /** Matches {@code strings} with many threads of the common
+   *  {@code ForkJoinPool}.
+   */
+  static void matchParallel (final RE re, final List<? extends CharSequence> strings, final int eflags, final BatchResult result)
+  {
+    final int n = strings.size();
+    final int parts = Math.max (1, Math.min (n / 1024, 4 * Runtime.getRuntime().availableProcessors()));
+    IntStream.range (0, parts).parallel().forEach (p -> {
+      final int from = (int)((long)n * p / parts);
+      final int to = (int)((long)n * (p + 1) / parts);
+      new BatchMatcher (re, re.newMatchData()).match (strings, from, to, eflags, result);
+    });
+  }
+
+
+  private final RE re;
+  private final MatchData md;
+  private int[] starts = new int[256];  // Wide offsets of the strings in the arena.
+}
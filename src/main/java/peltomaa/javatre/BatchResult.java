@@ -0,0 +1,103 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.BitSet;
+
+
+/** Results of matching many strings with {@link RE#matchAll(java.util.List)}.<p>
+ *
+ *  The results are in arrays of {@code int}s, one element for each string,
+ *  so that no object is made for a string.
+ */
+public final class BatchResult {
+  BatchResult (int size, boolean fuzzy)
+  {
+    this.start = new int[size];
+    this.end = new int[size];
+    this.cost = fuzzy ? new int[size] : null;
+  }
+
+
+  /** Returns the number of strings. */
+  public int size()
+  {
+    return start.length;
+  }
+
+
+  /** Returns {@code true} if the {@code i}th string matched. */
+  public boolean matched (int i)
+  {
+    return start[i] >= 0;
+  }
+
+
+  /** Returns the start offset of the match in the {@code i}th string,
+   *  or -1 if it did not match.
+   */
+  public int start (int i)
+  {
+    return start[i];
+  }
+
+
+  /** Returns the offset after the match in the {@code i}th string,
+   *  or -1 if it did not match.
+   */
+  public int end (int i)
+  {
+    return end[i];
+  }
+
+
+  /** Returns the cost of the fuzzy match of the {@code i}th string,
+   *  or 0 for an ordinary regex or if the string did not match.
+   */
+  public int cost (int i)
+  {
+    return (cost == null) ? 0 : cost[i];
+  }
+
+
+  /** Returns the number of strings that matched. */
+  public int count()
+  {
+    int n = 0;
+    for (int s : start) {
+      if (s >= 0) n++;
+    }
+    return n;
+  }
+
+
+  /** Returns the strings that matched as a {@code BitSet}. */
+  public BitSet toBitSet()
+  {
+    BitSet b = new BitSet (start.length);
+    for (int i = 0; i < start.length; i++) {
+      if (start[i] >= 0) b.set (i);
+    }
+    return b;
+  }
+
+
+  final int[] start;
+  final int[] end;
+  final int[] cost;  // null for an ordinary regex.
+}
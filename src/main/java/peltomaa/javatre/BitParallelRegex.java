@@ -0,0 +1,377 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.Map;
+import java.util.TreeMap;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Matching of a literal ({@code REG_LITERAL}) pattern in Java, without TRE.<p>
+ *
+ *  The pattern is searched with the bit-parallel algorithm of Myers
+ *  (G. Myers, A fast bit-vector algorithm for approximate string matching
+ *  based on dynamic programming, J. ACM 46(3), 1999). The edit distance of
+ *  the pattern and the best part of the string that ends at each character
+ *  is computed with a few operations on one {@code long}, so patterns up
+ *  to 64 characters are supported. The costs of inserts, deletes and
+ *  substitutes must be 1, and {@code max_ins}, {@code max_del} and
+ *  {@code max_subst} must not be smaller than the limit of the total cost.<p>
+ *
+ *  The match ends where the cost first is within the limit, and it is
+ *  extended as long as the next character lowers the cost. Of the matches
+ *  that end there with the lowest cost, the longest one is taken, and the
+ *  numbers of inserts, deletes and substitutes are found by computing the
+ *  edit distance table of that part of the string.<p>
+ *
+ *  {@link RE#compile(String,int)} and
+ *  {@link RE#compile(String,int,TRE.regaparams_t.ByValue)} use this class
+ *  when {@link #accepts} returns {@code true}. An exact pattern is always
+ *  accepted. A fuzzy pattern is accepted only with {@code REG_NOSUB},
+ *  because the offsets and the costs of fuzzy matches have not been
+ *  compared with {@code tre_regawnexec} yet (see {@code BitParallelRegexTest}),
+ *  but whether there is a match within the limit does not depend on them.
+ */
+final class BitParallelRegex extends RE {
+  /** Maximum length of the pattern. */
+  static final int MAX_LENGTH = 64;
+
+
+  /** Returns {@code true} if this class can match {@code regex} like TRE would.
+   *
+   * @param regex  Regular expression.
+   * @param cflags Compilation flags.
+   * @param params Fuzzy regular expression parameters, or {@code null}.
+   */
+  static boolean accepts (String regex, int cflags, regaparams_t params)
+  {
+    if ((cflags & REG_LITERAL) == 0
+     || (cflags & ~(REG_LITERAL | REG_EXTENDED | REG_NOSUB | REG_NEWLINE)) != 0
+     || regex.isEmpty() || regex.length() > MAX_LENGTH) {
+      return false;
+    }
+    for (int i = 0; i < regex.length(); i++) {
+      if (Character.isSurrogate (regex.charAt (i))) return false;
+    }
+    if (params == null) {
+      return true;
+    }
+    if ((cflags & REG_NOSUB) == 0) {
+      return false;  // The offsets and costs may differ from TRE.
+    }
+    if (params.cost_ins != 1 || params.cost_del != 1 || params.cost_subst != 1) {
+      return false;
+    }
+    final int k = limit (params);
+    return k >= 0 && params.max_ins >= k && params.max_del >= k && params.max_subst >= k;
+  }
+
+
+  /** Constructor.
+   *
+   * @param regex  Regular expression, accepted by {@link #accepts}.
+   * @param cflags Compilation flags.
+   * @param params Fuzzy regular expression parameters, or {@code null}.
+   */
+  BitParallelRegex (String regex, int cflags, regaparams_t.ByValue params)
+  {
+    super (regex, cflags, false);
+    this.m = regex.length();
+    this.nmatch = nm (regex).intValue();
+    this.params = (params == null) ? null : copyOf (params);
+    this.k = (params == null) ? 0 : limit (params);
+
+    final Map<Integer,Long> masks = new TreeMap<>();
+    for (int i = 0; i < m; i++) {
+      final char c = regex.charAt (i);
+      if (c < ascii.length) {
+        ascii[c] |= 1L << i;
+      }
+      else {
+        masks.merge ((int)c, 1L << i, (a, b) -> a | b);
+      }
+    }
+    this.keys = new int[masks.size()];
+    this.values = new long[masks.size()];
+    int i = 0;
+    for (Map.Entry<Integer,Long> e : masks.entrySet()) {
+      keys[i] = e.getKey();
+      values[i++] = e.getValue();
+    }
+  }
+
+
+  @Override
+  public Matcher matcher (String string, int eflags)
+  {
+    return new Matcher (this, string, eflags);
+  }
+
+
+  /** Finds the pattern in characters {@code offset..end} of {@code md.subject}.
+   *  The execution flags do not change how a literal pattern matches.
+   */
+  @Override
+  int exec (MatchData md, int offset, int end, int eflags)
+  {
+    checkOpen();
+    final boolean timed = Metrics.enabled;
+    final long t0 = timed ? System.nanoTime() : 0;
+    final Object event = Jfr.beginExec();
+    final boolean found = find (md, offset, end, k);
+    if (!found) {
+      md.clear();
+    }
+    final int result = found ? 0 : REG_NOMATCH;
+    if (timed) {
+      Metrics.executed (this, end - offset, System.nanoTime() - t0, result);
+    }
+    if (event != null) {
+      Jfr.endExec (event, this, end - offset, result, md);
+    }
+    return result;
+  }
+
+
+  /** Returns the match with the lowest cost. The lowest cost is found
+   *  with one pass over the string, and the match with another.
+   */
+  @Override
+  Match bestMatch (MatchData md, String string, int eflags)
+  {
+    checkOpen();
+    md.subject.set (string);
+    final int cost = (params == null) ? 0 : minCost (md.subject, md.subject.length());
+    if (cost > k || !find (md, 0, md.subject.length(), cost)) {
+      return null;
+    }
+    return new Match (string, md, params != null);
+  }
+
+
+  @Override
+  public regaparams_t aparams()
+  {
+    return params;
+  }
+
+
+  @Override
+  protected int nmatch()
+  {
+    return nmatch;
+  }
+
+
+  @Override
+  String engine()
+  {
+    return "java";
+  }
+
+
+  /** Finds the first match with cost at most {@code limit} and sets it to {@code md}. */
+  private boolean find (MatchData md, int offset, int end, int limit)
+  {
+    final NativeSubject s = md.subject;
+    final long last = 1L << (m - 1);
+    long pv = -1L >>> (64 - m);  // Vertical differences +1 and -1 of the current column.
+    long mv = 0;
+    int score = m;               // Edit distance of the pattern at the current character.
+    int matchEnd = (score <= limit) ? offset : -1;
+    int best = score;
+
+    for (int j = offset; j < end && best > 0; j++) {
+      final long eq = peq (s.get (j));
+      final long xv = eq | mv;
+      final long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & last) != 0) {
+        score++;
+      }
+      else if ((mh & last) != 0) {
+        score--;
+      }
+      ph <<= 1;
+      mh <<= 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+
+      if (matchEnd < 0) {
+        if (score <= limit) {
+          matchEnd = j + 1;
+          best = score;
+        }
+      }
+      else if (score < best) {
+        matchEnd = j + 1;  // The next character lowered the cost.
+        best = score;
+      }
+      else {
+        break;
+      }
+    }
+    if (matchEnd < 0) {
+      return false;
+    }
+    traceback (md, offset, matchEnd, best);
+    return true;
+  }
+
+
+  /** Returns the lowest edit distance of the pattern and any part of
+   *  the first {@code end} characters of {@code s}.
+   */
+  private int minCost (NativeSubject s, int end)
+  {
+    final long last = 1L << (m - 1);
+    long pv = -1L >>> (64 - m);
+    long mv = 0;
+    int score = m;
+    int min = score;
+
+    for (int j = 0; j < end && min > 0; j++) {
+      final long eq = peq (s.get (j));
+      final long xv = eq | mv;
+      final long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & last) != 0) {
+        score++;
+      }
+      else if ((mh & last) != 0) {
+        score--;
+      }
+      ph <<= 1;
+      mh <<= 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+      min = Math.min (min, score);
+    }
+    return min;
+  }
+
+
+  /** Finds the start and the edits of the longest match with {@code cost}
+   *  that ends at {@code end}, and sets the match to {@code md}.
+   *  The table compares the pattern and the string backwards from {@code end}.
+   */
+  private void traceback (MatchData md, int offset, int end, int cost)
+  {
+    final NativeSubject s = md.subject;
+    final int n = Math.min (end - offset, m + cost);  // A longer match would cost more.
+    final int w = n + 1;
+    final int[] d = new int[(m + 1) * w];  // d[i*w+l]: last i chars of pattern, last l chars of string.
+
+    for (int l = 0; l <= n; l++) {
+      d[l] = l;
+    }
+    for (int i = 1; i <= m; i++) {
+      final int p = pattern().charAt (m - i);
+      d[i * w] = i;
+      for (int l = 1; l <= n; l++) {
+        final int diagonal = d[(i - 1) * w + l - 1] + ((p == s.get (end - l)) ? 0 : 1);
+        final int ins = d[i * w + l - 1] + 1;
+        final int del = d[(i - 1) * w + l] + 1;
+        d[i * w + l] = Math.min (diagonal, Math.min (ins, del));
+      }
+    }
+
+    int length = 0;
+    for (int l = 0; l <= n; l++) {
+      if (d[m * w + l] <= d[m * w + length]) length = l;
+    }
+
+    int i = m;
+    int l = length;
+    int numIns = 0;
+    int numDel = 0;
+    int numSubst = 0;
+    while (i > 0 || l > 0) {
+      final int here = d[i * w + l];
+      if (i > 0 && l > 0) {
+        final boolean same = pattern().charAt (m - i) == s.get (end - l);
+        if (here == d[(i - 1) * w + l - 1] + (same ? 0 : 1)) {
+          if (!same) numSubst++;
+          i--;
+          l--;
+          continue;
+        }
+      }
+      if (l > 0 && here == d[i * w + l - 1] + 1) {
+        numIns++;
+        l--;
+      }
+      else {
+        numDel++;
+        i--;
+      }
+    }
+    md.set (end - length, end, d[m * w + length], numIns, numDel, numSubst);
+  }
+
+
+  /** Returns the positions of character {@code c} in the pattern as bits. */
+  private long peq (int c)
+  {
+    if (c >= 0 && c < ascii.length) {
+      return ascii[c];
+    }
+    int lo = 0;
+    int hi = keys.length - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (keys[mid] < c) lo = mid + 1;
+      else if (keys[mid] > c) hi = mid - 1;
+      else return values[mid];
+    }
+    return 0;
+  }
+
+
+  /** Returns the maximum cost (= number of errors) of a match. */
+  private static int limit (regaparams_t params)
+  {
+    return Math.min (params.max_cost, params.max_err);
+  }
+
+
+  private static regaparams_t.ByValue copyOf (regaparams_t params)
+  {
+    regaparams_t.ByValue p = new regaparams_t.ByValue();
+    p.cost_ins   = params.cost_ins;
+    p.cost_del   = params.cost_del;
+    p.cost_subst = params.cost_subst;
+    p.max_cost   = params.max_cost;
+    p.max_ins    = params.max_ins;
+    p.max_del    = params.max_del;
+    p.max_subst  = params.max_subst;
+    p.max_err    = params.max_err;
+    return p;
+  }
+
+
+  private final int m;                 // Length of the pattern.
+  private final int nmatch;
+  private final int k;                 // Maximum cost of a match.
+  private final regaparams_t.ByValue params;
+  private final long[] ascii = new long[128];  // Positions of ASCII characters in the pattern.
+  private final int[] keys;            // Other characters of the pattern, sorted.
+  private final long[] values;         // Positions of keys in the pattern.
+}
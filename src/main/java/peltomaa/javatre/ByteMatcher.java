@@ -0,0 +1,243 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.nio.ByteBuffer;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Matches regular expressions to bytes.<p>
+ *
+ *  A byte matcher is created by {@link RE#matcher(ByteBuffer)} or
+ *  {@link RE#matcher(byte[],int,int)} of a regular expression that was compiled
+ *  with {@link RE#compileBytes(String,int)}. The bytes are matched
+ *  with {@code tre_regnexec} or {@code tre_reganexec} without converting
+ *  them to a {@code String} or to {@code wchar_t}s. A direct
+ *  {@code ByteBuffer} is matched in place, other bytes are copied
+ *  to native memory once after each {@code reset}.<p>
+ *
+ *  Offsets are byte offsets within the array or the buffer. A byte is
+ *  one character, so a multibyte UTF-8 character is matched by the bytes
+ *  of the character (see {@link RE#compileBytes(String,int)}).<p>
+ *
+ *  Like {@link Matcher}, a byte matcher must not be used by many threads at the
+ *  same time.
+ */
+public class ByteMatcher {
+  /** Constructor.
+   *
+   * @param re     Regular expression.
+   * @param eflags Execution flags.
+   */
+  ByteMatcher (NativeRegex re, int eflags)
+  {
+    this.re = re;
+    this.md = re.newMatchData();
+    this.eflags = eflags;
+  }
+
+
+  /** Resets this matcher with bytes from the position to the limit of {@code buffer}.
+   *  The position and the limit of {@code buffer} are not changed.
+   *
+   * @param buffer Bytes to be matched.
+   * @param eflags Execution flags.
+   */
+  public ByteMatcher reset (ByteBuffer buffer, int eflags)
+  {
+    bytes.set (buffer);
+    this.base = buffer.position();
+    this.eflags = eflags;
+    return reset();
+  }
+
+
+  /** Resets this matcher with {@code len} bytes of {@code array} starting at {@code off}.
+   *
+   * @param array  Bytes to be matched.
+   * @param off    Offset of the first byte.
+   * @param len    Number of bytes.
+   * @param eflags Execution flags.
+   */
+  public ByteMatcher reset (byte[] array, int off, int len, int eflags)
+  {
+    bytes.set (array, off, len);
+    this.base = off;
+    this.eflags = eflags;
+    return reset();
+  }
+
+
+  /** Resets this matcher; that is, deletes its state information.
+   */
+  public ByteMatcher reset()
+  {
+    this.findOffset = 0;
+    this.done = false;
+    return this;
+  }
+
+
+  /** Matches the bytes against the regular expression.
+   *
+   * @return true if any part of the bytes matches the regular expression;
+   *         otherwise false.
+   */
+  public boolean wmatch()
+  {
+    return exec (0, eflags);
+  }
+
+
+  /** Matches all bytes against the regular expression.
+   *
+   * @return  true if all bytes match the regex.
+   */
+  public boolean matches()
+  {
+    return exec (0, eflags) && (md.startOffset (0) == 0) && (md.endOffset (0) == bytes.length());
+  }
+
+
+  /** Matches the start of the bytes against the regular expression.
+   *
+   * @return {@code true} if the start of the bytes matches the regex.
+   */
+  public boolean lookingAt()
+  {
+    return exec (0, eflags) && (md.startOffset (0) == 0);
+  }
+
+
+  /** Finds the next match. If the previous match was empty,
+   *  the search starts one byte after it. After this has returned
+   *  {@code false}, it returns {@code false} until {@link #reset()}.
+   */
+  public boolean find()
+  {
+    if (!done) {
+      final int offset = findOffset;
+      if (offset < bytes.length() && exec (offset, findEflags (offset))) {
+        final int end = md.endOffset (0);
+        findOffset = (md.startOffset (0) == end) ? end + 1 : end;
+        return true;
+      }
+      done = true;
+    }
+    md.clear();
+    return false;
+  }
+
+
+  private boolean exec (int offset, int eflags)
+  {
+    return re.matchResult (re.execBytes (md, bytes.pointer (offset), bytes.length() - offset, offset, eflags));
+  }
+
+
+  /** Returns the execution flags for matching from {@code offset}.
+   *  See {@link Matcher}.
+   */
+  private int findEflags (int offset)
+  {
+    if (offset == 0) {
+      return eflags;
+    }
+    if (((re.cflags() & REG_NEWLINE) != 0) && (bytes.get (offset - 1) == '\n')) {
+      return eflags;
+    }
+    return eflags | REG_NOTBOL;
+  }
+
+
+  /** Returns the offset of the first byte of the match.
+   *  This is equal to {@code start(0)}.
+   */
+  public int start()
+  {
+    return start (0);
+  }
+
+
+  /** Returns the offset of the first byte of the {@code n}th submatch
+   *  within the array or the buffer. Returns -1 if the submatch does not exist.
+   *
+   * @param n Index of the submatch.
+   */
+  public int start (int n)
+  {
+    final int s = md.startOffset (n);
+    return (s < 0) ? s : base + s;
+  }
+
+
+  /** Returns the offset of the first byte after the match.
+   *  This is equal to {@code end(0)}.
+   */
+  public int end()
+  {
+    return end (0);
+  }
+
+
+  /** Returns the offset of the first byte after the {@code n}th submatch
+   *  within the array or the buffer. Returns -1 if the submatch does not exist.
+   *
+   * @param n Index of the submatch.
+   */
+  public int end (int n)
+  {
+    final int e = md.endOffset (n);
+    return (e < 0) ? e : base + e;
+  }
+
+
+  /** Returns the size of submatch array.
+   */
+  public int nmatch()
+  {
+    return md.nmatch();
+  }
+
+
+  /** Returns the cost of the last fuzzy match. */
+  public int cost() {return md.cost();}
+
+  /** Returns the number of inserts in the last fuzzy match. */
+  public int numIns() {return md.numIns();}
+
+  /** Returns the number of deletes in the last fuzzy match. */
+  public int numDel() {return md.numDel();}
+
+  /** Returns the number of substitutes in the last fuzzy match. */
+  public int numSubst() {return md.numSubst();}
+
+
+  /** Returns the regular expression that this matcher uses.
+   */
+  public RE regex() {return re;}
+
+
+  private final NativeRegex re;
+  private final MatchData md;
+  private final NativeBytes bytes = new NativeBytes();
+  private int base;               // Offset of the first byte within the array or the buffer.
+  private int eflags;
+  private int findOffset = 0;     // Offset to start the next search in find().
+  private boolean done = false;   // Has find() failed since reset()?
+}
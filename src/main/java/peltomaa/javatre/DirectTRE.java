@@ -0,0 +1,91 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Direct mapped (see {@code com.sun.jna.Native.register}) bindings for the
+ *  functions of <a href = "http://laurikari.net/tre/">TRE</a> library
+ *  that {@link RE}, {@link Regex} and {@link FuzzyRegex} call.<p>
+ *
+ *  Unlike the interface {@link TRE}, calls to these functions do not go
+ *  through a reflection based proxy, and structures are passed as pointers
+ *  to their native memory, so that JNA does not read or write them
+ *  automatically. The caller reads the results from native memory itself.<p>
+ *
+ *  The signatures are the same as in {@link TRE}, except that
+ *  {@code regex_t}, {@code regmatch_t[]} and {@code regamatch_t} are
+ *  {@code Pointer}s, and the {@code size_t} arguments of the match
+ *  functions are primitive {@code long}s, so that a match does not
+ *  allocate {@code NativeLong}s. If {@code size_t} has 4 bytes, the
+ *  functions of {@link Narrow} with {@code int} arguments are used.<p>
+ *
+ *  Strings to be matched are in native memory (see {@link NativeSubject}
+ *  and {@link NativeBytes}), so only the versions with a length argument
+ *  are needed.
+ */
+final class DirectTRE {
+  static {
+    Native.register (DirectTRE.class, RE.getNativeLibrary());
+  }
+
+  private DirectTRE() {}
+
+
+  static native int tre_regwcomp (Pointer preg, WString regex, int cflags);
+
+  static native void tre_regfree (Pointer preg);
+
+  static native int tre_regwnexec (Pointer preg, Pointer string, long len, long nmatch, Pointer pmatch, int eflags);
+
+  static native int tre_regawnexec (Pointer preg, Pointer string, long len, Pointer match, regaparams_t.ByValue params, int eflags);
+
+  static native int tre_regnexec (Pointer preg, Pointer string, long len, long nmatch, Pointer pmatch, int eflags);
+
+  static native int tre_reganexec (Pointer preg, Pointer string, long len, Pointer match, regaparams_t.ByValue params, int eflags);
+
+  static native NativeLong tre_regerror (int errcode, Pointer preg, byte[] errbuf, NativeLong errbuf_size);
+
+
+  /** The match functions for platforms where {@code size_t} has 4 bytes. */
+  static final class Narrow {
+    static {
+      Native.register (Narrow.class, RE.getNativeLibrary());
+    }
+
+    private Narrow() {}
+
+
+    static native int tre_regwnexec (Pointer preg, Pointer string, int len, int nmatch, Pointer pmatch, int eflags);
+
+    static native int tre_regawnexec (Pointer preg, Pointer string, int len, Pointer match, regaparams_t.ByValue params, int eflags);
+
+    static native int tre_regnexec (Pointer preg, Pointer string, int len, int nmatch, Pointer pmatch, int eflags);
+
+    static native int tre_reganexec (Pointer preg, Pointer string, int len, Pointer match, regaparams_t.ByValue params, int eflags);
+  }
+
+
+  /** {@code true} if {@code size_t} has 8 bytes. */
+  static final boolean WIDE_SIZE_T = (Native.SIZE_T_SIZE == 8);
+
+  /** Size of {@code regmatch_t} in bytes. */
+  static final int REGMATCH_SIZE = 8;  // Two ints, we assume that regoff_t is int.
+}
@@ -0,0 +1,155 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Finds the matches of a byte regex in a file without reading the file
+ *  to the Java heap.<p>
+ *
+ *  The file is mapped to memory with {@code FileChannel.map} in windows of
+ *  {@code window + overlap} bytes, and the windows are matched in place
+ *  with {@code tre_regnexec} or {@code tre_reganexec}. A match is reported
+ *  by the window in which it starts. The overlap lets a match that starts
+ *  near the end of a window continue to the next window, so matches up to
+ *  {@code overlap} bytes long are found correctly; a longer match that
+ *  crosses a window boundary is cut at the end of the mapped bytes.<p>
+ *
+ *  {@code REG_NOTBOL} and {@code REG_NOTEOL} are set when a window does not
+ *  start at the start or end at the end of the file (or of a line with
+ *  {@code REG_NEWLINE}), so {@code ^} and {@code $} match as if the whole
+ *  file was matched at once.
+ */
+final class FileScanner {
+  /** Default size of a window. */
+  static final int WINDOW = 64 << 20;
+
+  /** Default size of the overlap of windows, and the maximum length of a match. */
+  static final int OVERLAP = 1 << 20;
+
+
+  /** Constructor.
+   *
+   * @param re      Regular expression, compiled with {@code REG_USEBYTES}.
+   * @param window  Size of a window in bytes.
+   * @param overlap Size of the overlap of windows in bytes.
+   */
+  FileScanner (NativeRegex re, int window, int overlap)
+  {
+    if (window < 1 || overlap < 0 || (long)window + overlap > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException ("window = " + window + ", overlap = " + overlap);
+    }
+    this.re = re;
+    this.md = re.newMatchData();
+    this.window = window;
+    this.overlap = overlap;
+  }
+
+
+  /** Finds the matches in {@code file} and gives them to {@code sink}.
+   *
+   * @return The number of matches.
+   */
+  long scan (Path file, int eflags, MatchSink sink) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open (file, StandardOpenOption.READ)) {
+      return scan (channel, 0, channel.size(), eflags, sink);
+    }
+  }
+
+
+  /** Finds the matches in bytes {@code from..to} of a file and gives them
+   *  to {@code sink}. Matches are not continued after {@code to}.
+   *
+   * @return The number of matches.
+   */
+  long scan (FileChannel channel, long from, long to, int eflags, MatchSink sink) throws IOException
+  {
+    try {
+      final boolean endOfFile = (to == channel.size());
+      final boolean newline = (re.cflags() & REG_NEWLINE) != 0;
+      final Pointer p = new Pointer (0);
+      long count = 0;
+      long next = from;  // Offset where the search continues.
+
+      for (long pos = from; pos < to; pos += window) {
+        if (next >= pos + window) continue;  // A match covered the whole window.
+
+        final int len = (int)Math.min ((long)window + overlap, to - pos);
+        final boolean last = (pos + len == to);
+        final MappedByteBuffer buffer = channel.map (FileChannel.MapMode.READ_ONLY, pos, len);
+        mapped = buffer;  // Keeps the buffer mapped while TRE reads it.
+        final long address = Pointer.nativeValue (Native.getDirectBufferPointer (buffer));
+
+        int offset = (int)(Math.max (next, pos) - pos);
+        while (offset < len) {
+          int flags = (last && endOfFile) ? eflags : eflags | REG_NOTEOL;
+          if (pos + offset != 0) {
+            final byte previous = (offset > 0) ? buffer.get (offset - 1) : byteBefore (channel, pos);
+            if (!newline || previous != '\n') flags |= REG_NOTBOL;
+          }
+
+          Pointer.nativeValue (p, address + offset);
+          if (!re.matchResult (re.execBytes (md, p, len - offset, offset, flags))) {
+            break;
+          }
+          final int start = md.startOffset (0);
+          final int end = md.endOffset (0);
+          if (start >= window && !last) {
+            break;  // The next window finds this.
+          }
+
+          count++;
+          if (!sink.match (pos + start, pos + end, md.cost())) {
+            return count;
+          }
+          offset = (start == end) ? end + 1 : end;
+        }
+        next = pos + offset;
+        if (last) break;
+      }
+      return count;
+    }
+    finally {
+      mapped = null;
+    }
+  }
+
+
+  private static byte byteBefore (FileChannel channel, long pos) throws IOException
+  {
+    ByteBuffer b = ByteBuffer.allocate (1);
+    channel.read (b, pos - 1);
+    return b.get (0);
+  }
+
+
+  private final NativeRegex re;
+  private final MatchData md;
+  private final int window;
+  private final int overlap;
+  private MappedByteBuffer mapped;
+}
@@ -0,0 +1,286 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Finds the entries of a large dictionary that approximately contain
+ *  a query string.<p>
+ *
+ *  The entries are indexed by their q-grams (substrings of {@code q} chars).
+ *  The postings are in two {@code int} arrays (compressed sparse rows):
+ *  the ids of the entries that contain a q-gram are in
+ *  {@code postings[start[h]..start[h+1])}, where {@code h} is the hash of
+ *  the q-gram.<p>
+ *
+ *  If a query of length {@code m} matches a part of an entry with at most
+ *  {@code k} errors, the entry contains at least {@code m - q + 1 - k*q}
+ *  of the q-grams of the query (the q-gram lemma). Only entries with that
+ *  many q-grams are candidates, and the candidates are matched with
+ *  {@code tre_regawnexec} to find the matches and their costs. If the
+ *  number of errors is not limited or the query is too short, all entries
+ *  are candidates.<p>
+ *
+ *  A {@code FuzzyDictionary} can be used by many threads at the same time.
+ */
+public final class FuzzyDictionary {
+  /** An entry that matched a query. */
+  public static final class Hit {
+    Hit (int id, String entry, Match match)
+    {
+      this.id = id;
+      this.entry = entry;
+      this.match = match;
+    }
+
+    /** Returns the index of the entry in the dictionary. */
+    public int id() {return id;}
+
+    /** Returns the entry. */
+    public String entry() {return entry;}
+
+    /** Returns the lowest cost match of the query in the entry. */
+    public Match match() {return match;}
+
+    /** Returns the cost of the match. */
+    public int cost() {return match.cost();}
+
+    @Override
+    public String toString()
+    {
+      return id + ":" + entry + " cost " + match.cost();
+    }
+
+    private final int id;
+    private final String entry;
+    private final Match match;
+  }
+
+
+  /** Constructor.
+   *
+   * @param entries The dictionary.
+   * @param q       Length of the q-grams, usually 2 or 3.
+   */
+  public FuzzyDictionary (List<String> entries, int q)
+  {
+    if (q < 1) {
+      throw new IllegalArgumentException ("q = " + q);
+    }
+    this.entries = entries.toArray (new String[0]);
+    this.q = q;
+
+    long grams = 0;
+    for (String e : this.entries) {
+      grams += Math.max (0, e.length() - q + 1);
+    }
+    final int buckets = Integer.highestOneBit ((int)Math.min (1 << 24, Math.max (1024, grams / 4))) * 2;
+    this.mask = buckets - 1;
+
+    // Pass 1: count the entries of each bucket. Pass 2: fill the postings.
+    final int[][] hashes = new int[this.entries.length][];
+    final int[] count = new int[buckets + 1];
+    for (int id = 0; id < this.entries.length; id++) {
+      hashes[id] = distinctHashes (this.entries[id]);
+      for (int h : hashes[id]) count[h + 1]++;
+    }
+    for (int h = 0; h < buckets; h++) {
+      count[h + 1] += count[h];
+    }
+    this.start = count.clone();
+    this.postings = new int[count[buckets]];
+    for (int id = 0; id < this.entries.length; id++) {
+      for (int h : hashes[id]) postings[count[h]++] = id;
+      hashes[id] = null;
+    }
+  }
+
+
+  /** Constructor with q-grams of 3 chars.
+   *
+   * @param entries The dictionary.
+   */
+  public FuzzyDictionary (List<String> entries)
+  {
+    this (entries, 3);
+  }
+
+
+  /** Returns the number of entries. */
+  public int size()
+  {
+    return entries.length;
+  }
+
+
+  /** Returns at most {@code k} entries that contain {@code query} with the
+   *  lowest costs, in the order of the cost and the id. The query is a
+   *  literal string ({@code REG_LITERAL}).
+   *
+   * @param query  The string to be found.
+   * @param params Fuzzy matching parameters; limit the number of errors.
+   * @param k      Maximum number of entries.
+   */
+  public List<Hit> lookup (String query, regaparams_t.ByValue params, int k)
+  {
+    final RE re = RE.newRegex (query, REG_LITERAL, params);
+    try {
+      // One match data for all candidates, so the native buffers are
+      // allocated once. bestMatch() drops the candidates that do not match.
+      final MatchData md = re.newMatchData();
+      final List<Hit> hits = new ArrayList<>();
+      for (int id : candidates (query, LiteralPrefilter.maxErrors (params))) {
+        final Match match = re.bestMatch (md, entries[id], 0);
+        if (match != null) {
+          hits.add (new Hit (id, entries[id], match));
+        }
+      }
+      hits.sort (Comparator.comparingInt (Hit::cost).thenComparingInt (Hit::id));
+      return (hits.size() > k) ? new ArrayList<> (hits.subList (0, k)) : hits;
+    }
+    finally {
+      re.close();
+    }
+  }
+
+
+  /** Looks up many queries with many threads.
+   *  The result has the hits of each query in the same order as {@code queries}.
+   *
+   * @param queries The strings to be found.
+   * @param params  Fuzzy matching parameters.
+   * @param k       Maximum number of entries for each query.
+   */
+  public List<List<Hit>> lookupAll (List<String> queries, final regaparams_t.ByValue params, final int k)
+  {
+    return queries.parallelStream()
+                  .map (query -> lookup (query, params, k))
+                  .collect (Collectors.toList());
+  }
+
+
+  /** Returns the ids of the entries that have at least
+   *  {@code m - q + 1 - maxErrors*q} of the q-grams of the query, in order.
+   */
+  int[] candidates (String query, int maxErrors)
+  {
+    final int n = query.length() - q + 1;
+    final long threshold = (maxErrors < 0) ? 0 : n - (long)maxErrors * q;
+    if (threshold <= 0) {
+      final int[] all = new int[entries.length];
+      for (int i = 0; i < all.length; i++) all[i] = i;
+      return all;
+    }
+
+    // Count the q-grams of the query in each entry. Each distinct q-gram
+    // of the query counts as many times as it is in the query.
+    final int[] hashes = new int[n];
+    for (int i = 0; i < n; i++) {
+      hashes[i] = hash (query, i);
+    }
+    Arrays.sort (hashes);
+
+    final Counts c = counts.get();
+    c.ensureCapacity (entries.length);
+    int touched = 0;
+    for (int i = 0; i < n; ) {
+      final int h = hashes[i];
+      int times = 0;
+      while (i < n && hashes[i] == h) {
+        times++;
+        i++;
+      }
+      for (int p = start[h]; p < start[h + 1]; p++) {
+        final int id = postings[p];
+        if (c.count[id] == 0) c.touched[touched++] = id;
+        c.count[id] += times;
+      }
+    }
+
+    int found = 0;
+    for (int i = 0; i < touched; i++) {
+      final int id = c.touched[i];
+      if (c.count[id] >= threshold) c.touched[found++] = id;
+      c.count[id] = 0;
+    }
+    final int[] result = Arrays.copyOf (c.touched, found);
+    Arrays.sort (result);
+    return result;
+  }
+
+
+  /** Returns the distinct hashes of the q-grams of {@code s}. */
+  private int[] distinctHashes (String s)
+  {
+    final int n = s.length() - q + 1;
+    if (n <= 0) return EMPTY;
+    final int[] h = new int[n];
+    for (int i = 0; i < n; i++) {
+      h[i] = hash (s, i);
+    }
+    Arrays.sort (h);
+    int d = 0;
+    for (int i = 0; i < n; i++) {
+      if (d == 0 || h[i] != h[d - 1]) h[d++] = h[i];
+    }
+    return (d == n) ? h : Arrays.copyOf (h, d);
+  }
+
+
+  /** Returns the hash of the q-gram that starts at {@code i}. */
+  private int hash (String s, int i)
+  {
+    int h = 0;
+    for (int j = i; j < i + q; j++) {
+      h = 31 * h + s.charAt (j);
+    }
+    h *= 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+
+  /** Counters of one thread. */
+  private static final class Counts {
+    void ensureCapacity (int n)
+    {
+      if (count.length < n) {
+        count = new int[n];
+        touched = new int[n];
+      }
+    }
+
+    int[] count = new int[0];    // Count of each entry, all 0 between queries.
+    int[] touched = new int[0];  // Entries whose count is not 0.
+  }
+
+
+  private static final int[] EMPTY = new int[0];
+
+  private final String[] entries;
+  private final int q;
+  private final int mask;
+  private final int[] start;     // Start of the postings of each hash bucket.
+  private final int[] postings;  // Ids of the entries, in order within a bucket.
+  private final ThreadLocal<Counts> counts = ThreadLocal.withInitial (Counts::new);
+}
@@ -21,9 +21,9 @@ import com.sun.jna.*;
 import static peltomaa.javatre.TRE.*;
 
 
-/** Fuzzy regular expression matching using {@code tre_regawexec}.
+/** Fuzzy regular expression matching using {@code tre_regawnexec}.
  */
-class FuzzyRegex extends RE {
+class FuzzyRegex extends NativeRegex {
   /** Constructs a fuzzy regular expression.
    *
    * @param regex  Regular expression.
@@ -33,8 +33,9 @@ class FuzzyRegex extends RE {
   protected FuzzyRegex (String regex, int cflags, regaparams_t.ByValue params)
   {
     super (regex, cflags);
-    match = new regamatch_t.ByReference (nm (regex));
-    this.params = params;
+    nmatch = nm (regex).intValue();
+    this.params = copyOf (params);
+    this.prefilter = LiteralPrefilter.of (regex, cflags, params);
   }
 
 
@@ -45,34 +46,22 @@ class FuzzyRegex extends RE {
   }
 
 
-  /** Matches a regular expression by calling {@link TRE#tre_regawexec}.
-   *
-   * @param string String to be matched.
-   * @param eflags Execution flags.
-   *
-   * @return 0, if string matches regular expression,
-   *         {@code REG_NOMATCH}, if string does not match,
-   *         {@code REG_ESPACE}, if {@code tre_regawexec()} ran out of memory.
+  /** Matches a regular expression by calling {@code tre_regawnexec}.
+   *  {@code REG_ESPACE} is returned if {@code tre_regawnexec()} ran out of memory.
    */
   @Override
-  public int wexec (String string, int eflags)
+  int exec (MatchData md, Pointer string, int len, int eflags)
   {
-    final int matchResult = getLib().tre_regawexec (preg, new WString(string), match, params, eflags);
-
-    regmatch_t.ByReference[] p = getPmatch (match);
-
-    for (int i = 0; i < match.nmatch.intValue(); i++) {
-      p[i].read();  // Read match data from C to Java.
-//      System.out.println (string + " " + p[i].rm_so + " " + p[i].rm_eo);
-    }
-    return matchResult;
+    return backend().regawnexec (preg.getPointer(), string, len, md.amatch(), params, eflags);
   }
 
 
+  /** Matches a regular expression to bytes by calling {@code tre_reganexec}.
+   */
   @Override
-  public regmatch_t[] pmatch()
+  int nexec (MatchData md, Pointer string, int len, int eflags)
   {
-    return getPmatch(match);
+    return backend().reganexec (preg.getPointer(), string, len, md.amatch(), params, eflags);
   }
 
 
@@ -86,48 +75,41 @@ class FuzzyRegex extends RE {
 
 
   @Override
-  protected int start (int n)
+  public LiteralPrefilter prefilter()
   {
-    return getPmatch(match)[n].rm_so;
-  }
-
-
-  @Override
-  protected int end (int n)
-  {
-    return getPmatch(match)[n].rm_eo;
-  }
-
-
-  @Override
-  protected void setOffsets (int offset)
-  {
-    regmatch_t.ByReference[] p = getPmatch (match);
-
-    for (int i = 0; i < match.nmatch.intValue(); i++) {
-//      System.out.println ("F " + start(i) + " " + end(i) + " " + offset + " " + string.substring(offset) + " " + pmatch[i].rm_so + " " + pmatch[i].rm_eo + " " + group(i));
-      if (p[i].rm_so >= 0) {
-        p[i].rm_so += offset;
-        p[i].rm_eo += offset;
-      }
-    }
+    return prefilter;
   }
 
 
   @Override
   protected int nmatch()
   {
-    return match.nmatch.intValue();
+    return nmatch;
   }
 
 
-
-  private regmatch_t.ByReference[] getPmatch (regamatch_t match)
+  /** Returns a copy of {@code params} whose native memory is written
+   *  only once, here. JNA would otherwise write the structure with
+   *  reflection before every call of {@code tre_regawexec}.
+   */
+  private static regaparams_t.ByValue copyOf (regaparams_t params)
   {
-    return (regmatch_t.ByReference[])match.pmatch.toArray (nmatch());
+    regaparams_t.ByValue p = new regaparams_t.ByValue();
+    p.cost_ins   = params.cost_ins;
+    p.cost_del   = params.cost_del;
+    p.cost_subst = params.cost_subst;
+    p.max_cost   = params.max_cost;
+    p.max_ins    = params.max_ins;
+    p.max_del    = params.max_del;
+    p.max_subst  = params.max_subst;
+    p.max_err    = params.max_err;
+    p.write();
+    p.setAutoSynch (false);
+    return p;
   }
 
 
-  private regamatch_t match;
-  private regaparams_t.ByValue params;
+  private final int nmatch;
+  private final regaparams_t.ByValue params;  // Shared by all threads, never written after copyOf().
+  private final LiteralPrefilter prefilter;
 }
@@ -0,0 +1,75 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/** Counts of values in power of two buckets: bucket {@code i} counts the
+ *  values {@code v} with {@code 2^i <= v < 2^(i+1)} (bucket 0 also counts 0).
+ *  Adding a value is one atomic increment.
+ */
+final class Histogram {
+  /** Adds {@code value}, which must not be negative. */
+  void add (long value)
+  {
+    buckets.incrementAndGet (63 - Long.numberOfLeadingZeros (value | 1));
+  }
+
+
+  /** Returns the counts of the buckets. */
+  long[] counts()
+  {
+    final long[] c = new long[buckets.length()];
+    for (int i = 0; i < c.length; i++) {
+      c[i] = buckets.get (i);
+    }
+    return c;
+  }
+
+
+  /** Returns an upper bound of the {@code p}th quantile ({@code 0 < p <= 1}),
+   *  or 0 if there are no values.
+   */
+  long quantile (double p)
+  {
+    final long[] c = counts();
+    long total = 0;
+    for (long n : c) total += n;
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = (long)Math.ceil (p * total);
+    long sum = 0;
+    for (int i = 0; i < c.length; i++) {
+      sum += c[i];
+      if (sum >= rank) return (i == 63) ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+    }
+    return Long.MAX_VALUE;
+  }
+
+
+  void reset()
+  {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set (i, 0);
+    }
+  }
+
+
+  private final AtomicLongArray buckets = new AtomicLongArray (64);
+}
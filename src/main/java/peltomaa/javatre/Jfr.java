@@ -0,0 +1,91 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+
+/** Emits the Java Flight Recorder events {@code peltomaa.javatre.TreCompile},
+ *  {@code peltomaa.javatre.TreExec} and {@code peltomaa.javatre.TreLibraryLoad}.<p>
+ *
+ *  The events are defined in {@code JfrEventsImpl}, which is compiled only
+ *  with Java 11 or later and is in directory {@code META-INF/versions/11}
+ *  of the multi-release jar file. With older Java, or with system property
+ *  {@code javatre.jfr=false}, there are no events and each {@code begin}
+ *  method returns {@code null}. When no recording has enabled an event,
+ *  its {@code begin} method returns {@code null} without allocating anything.
+ */
+final class Jfr {
+  private Jfr() {}
+
+
+  static Object beginCompile()
+  {
+    return (EVENTS == null) ? null : EVENTS.beginCompile();
+  }
+
+
+  static void endCompile (Object event, String pattern, int cflags, int errcode)
+  {
+    EVENTS.endCompile (event, pattern, cflags, errcode);
+  }
+
+
+  static Object beginExec()
+  {
+    return (EVENTS == null) ? null : EVENTS.beginExec();
+  }
+
+
+  /** Ends a {@code TreExec} event of matching {@code re}. The cost of a
+   *  fuzzy match is read from {@code md}; it is -1 for other matches.
+   */
+  static void endExec (Object event, RE re, int length, int result, MatchData md)
+  {
+    final int cost = (result == 0 && re.aparams() != null) ? md.cost() : -1;
+    EVENTS.endExec (event, re.pattern(), System.identityHashCode (re), length, re.engine(), result, cost);
+  }
+
+
+  static Object beginLibraryLoad()
+  {
+    return (EVENTS == null) ? null : EVENTS.beginLibraryLoad();
+  }
+
+
+  static void endLibraryLoad (Object event, String libraryName, String path, int attempts)
+  {
+    EVENTS.endLibraryLoad (event, libraryName, path, attempts);
+  }
+
+
+  private static JfrEvents load()
+  {
+    if (!"false".equals (System.getProperty ("javatre.jfr"))) {
+      try {
+        // Exists only in META-INF/versions/11 of the jar file.
+        Class<?> c = Class.forName ("peltomaa.javatre.JfrEventsImpl");
+        return (JfrEvents)c.getDeclaredConstructor().newInstance();
+      }
+      catch (ReflectiveOperationException | LinkageError e) {
+        // Older Java, or the jdk.jfr module is not there. No events.
+      }
+    }
+    return null;
+  }
+
+
+  private static final JfrEvents EVENTS = load();
+}
@@ -0,0 +1,38 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+
+/** Java Flight Recorder events of javatre, see {@link Jfr}.<p>
+ *
+ *  A {@code begin} method returns {@code null} if the event is not
+ *  enabled in any recording; otherwise it returns the event, which is
+ *  given to the {@code end} method after the work is done.
+ */
+interface JfrEvents {
+  Object beginCompile();
+
+  void endCompile (Object event, String pattern, int cflags, int errcode);
+
+  Object beginExec();
+
+  void endExec (Object event, String pattern, int patternId, int length, String engine, int result, int cost);
+
+  Object beginLibraryLoad();
+
+  void endLibraryLoad (Object event, String libraryName, String path, int attempts);
+}
@@ -0,0 +1,87 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+import static peltomaa.javatre.TRE.*;
+
+
+/** {@link TreBackend} that calls the direct mapped functions in {@link DirectTRE}.
+ */
+final class JnaBackend implements TreBackend {
+  @Override
+  public int regwcomp (Pointer preg, String regex, int cflags)
+  {
+    return DirectTRE.tre_regwcomp (preg, new WString (regex), cflags);
+  }
+
+
+  @Override
+  public void regfree (Pointer preg)
+  {
+    DirectTRE.tre_regfree (preg);
+  }
+
+
+  @Override
+  public int regwnexec (Pointer preg, Pointer string, long len, long nmatch, Pointer pmatch, int eflags)
+  {
+    return DirectTRE.WIDE_SIZE_T ? DirectTRE.tre_regwnexec (preg, string, len, nmatch, pmatch, eflags)
+                                 : DirectTRE.Narrow.tre_regwnexec (preg, string, (int)len, (int)nmatch, pmatch, eflags);
+  }
+
+
+  @Override
+  public int regawnexec (Pointer preg, Pointer string, long len, Pointer match, regaparams_t.ByValue params, int eflags)
+  {
+    return DirectTRE.WIDE_SIZE_T ? DirectTRE.tre_regawnexec (preg, string, len, match, params, eflags)
+                                 : DirectTRE.Narrow.tre_regawnexec (preg, string, (int)len, match, params, eflags);
+  }
+
+
+  @Override
+  public int regnexec (Pointer preg, Pointer string, long len, long nmatch, Pointer pmatch, int eflags)
+  {
+    return DirectTRE.WIDE_SIZE_T ? DirectTRE.tre_regnexec (preg, string, len, nmatch, pmatch, eflags)
+                                 : DirectTRE.Narrow.tre_regnexec (preg, string, (int)len, (int)nmatch, pmatch, eflags);
+  }
+
+
+  @Override
+  public int reganexec (Pointer preg, Pointer string, long len, Pointer match, regaparams_t.ByValue params, int eflags)
+  {
+    return DirectTRE.WIDE_SIZE_T ? DirectTRE.tre_reganexec (preg, string, len, match, params, eflags)
+                                 : DirectTRE.Narrow.tre_reganexec (preg, string, (int)len, match, params, eflags);
+  }
+
+
+  @Override
+  public String regerror (int errcode, Pointer preg)
+  {
+    byte[] errbuf = new byte[1000];
+    DirectTRE.tre_regerror (errcode, preg, errbuf, new NativeLong (errbuf.length));
+    return Native.toString (errbuf);
+  }
+
+
+  @Override
+  public String name()
+  {
+    return "jna";
+  }
+}
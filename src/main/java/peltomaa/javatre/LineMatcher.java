@@ -0,0 +1,329 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Matches each line of a {@code Reader} or an {@code InputStream} to a
+ *  regular expression, like {@code grep}.<p>
+ *
+ *  The input is read in large chunks to a buffer that is used again for
+ *  the next chunk. Each chunk is copied to native memory once, and the
+ *  lines are matched in place, so no {@code String} is made for a line
+ *  unless {@link #line()} is called. A line ends with {@code '\n'} or
+ *  {@code "\r\n"}, which are not part of the line.<p>
+ *
+ *  An {@code InputStream} is matched as bytes, so the regular expression
+ *  must be compiled with {@link RE#compileBytes(String,int)}; offsets are
+ *  then byte offsets. A {@code Reader} is matched as chars.<p>
+ *
+ *  Example:
+ *  <pre>
+ *  {@code
+ *  LineMatcher lm = new LineMatcher (RE.compileBytes ("ERROR", REG_EXTENDED), LineMatcher.Mode.FIRST);
+ *  lm.match (System.in, (line, start, end, cost) -> {
+ *    System.out.println (line + ": " + lm.line());
+ *    return true;
+ *  });
+ *  }
+ *  </pre>
+ *
+ *  This class is not thread safe.
+ */
+public final class LineMatcher {
+  /** What is given to the {@link Sink}. */
+  public enum Mode {
+    /** Only count the lines that match. The sink is not called. */
+    COUNT,
+    /** The first match of each line. */
+    FIRST,
+    /** All matches of each line. */
+    ALL
+  }
+
+
+  /** Receives the matches. */
+  @FunctionalInterface
+  public interface Sink {
+    /** Called for each match.
+     *
+     * @param line  Line number, the first line is 1.
+     * @param start Offset of the first character of the match within the line.
+     * @param end   Offset of the first character after the match within the line.
+     * @param cost  Cost of a fuzzy match, 0 for an ordinary regex.
+     *
+     * @return {@code true} to continue, {@code false} to stop.
+     */
+    boolean match (long line, int start, int end, int cost);
+  }
+
+
+  /** Constructor.
+   *
+   * @param re     Regular expression.
+   * @param mode   What is given to the sink.
+   * @param eflags Execution flags.
+   */
+  public LineMatcher (RE re, Mode mode, int eflags)
+  {
+    this.re = re;
+    this.mode = mode;
+    this.eflags = eflags;
+    this.md = re.newMatchData();
+  }
+
+
+  /** Constructor. This is equal to {@code LineMatcher (re, mode, 0)}.
+   *
+   * @param re   Regular expression.
+   * @param mode What is given to the sink.
+   */
+  public LineMatcher (RE re, Mode mode)
+  {
+    this (re, mode, 0);
+  }
+
+
+  /** Matches the lines of {@code in}. Does not close {@code in}.
+   *
+   * @param in   Input.
+   * @param sink Receives the matches; can be {@code null} in mode {@code COUNT}.
+   *
+   * @return The number of lines that match.
+   */
+  public long match (Reader in, Sink sink) throws IOException
+  {
+    if (chars == null) chars = new char[BUFFER_SIZE];
+    start (sink, false);
+
+    int length = 0;
+    int n;
+    while (!stopped) {
+      if (length == chars.length) chars = Arrays.copyOf (chars, 2 * length);
+      if ((n = in.read (chars, length, chars.length - length)) < 0) break;
+      length += n;
+      length = compact (length, charLines (length, false));
+    }
+    if (!stopped && length > 0) charLines (length, true);
+    return matchingLines;
+  }
+
+
+  /** Matches the lines of {@code in} as bytes. Does not close {@code in}.
+   *
+   * @param in   Input.
+   * @param sink Receives the matches; can be {@code null} in mode {@code COUNT}.
+   *
+   * @return The number of lines that match.
+   *
+   * @throws IllegalStateException if the regex was not compiled with
+   *         {@code REG_USEBYTES} (see {@link RE#compileBytes(String,int)}).
+   */
+  public long match (InputStream in, Sink sink) throws IOException
+  {
+    bytesRe = re.checkBytes();
+    if (bytes == null) bytes = new byte[BUFFER_SIZE];
+    start (sink, true);
+
+    int length = 0;
+    int n;
+    while (!stopped) {
+      if (length == bytes.length) bytes = Arrays.copyOf (bytes, 2 * length);
+      if ((n = in.read (bytes, length, bytes.length - length)) < 0) break;
+      length += n;
+      length = compact (length, byteLines (length, false));
+    }
+    if (!stopped && length > 0) byteLines (length, true);
+    return matchingLines;
+  }
+
+
+  /** Returns the number of the current line. During a call of the sink,
+   *  this is the line of the match; after {@code match} returns, this is
+   *  the number of lines read.
+   */
+  public long lineNumber()
+  {
+    return lineNumber;
+  }
+
+
+  /** Returns the offset of the current line from the start of the input
+   *  (in chars for a {@code Reader}, in bytes for an {@code InputStream}).
+   */
+  public long lineOffset()
+  {
+    return bufferOffset + lineStart;
+  }
+
+
+  /** Returns the current line as a string. This can be called from the
+   *  sink. Bytes are decoded as UTF-8.
+   */
+  public String line()
+  {
+    return byteInput ? new String (bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8)
+                     : new String (chars, lineStart, lineEnd - lineStart);
+  }
+
+
+  private void start (Sink sink, boolean byteInput)
+  {
+    this.sink = sink;
+    this.byteInput = byteInput;
+    this.matchingLines = 0;
+    this.lineNumber = 0;
+    this.bufferOffset = 0;
+    this.scanned = 0;
+    this.stopped = false;
+  }
+
+
+  /** Moves the unmatched end of the buffer to the start. Returns the new length. */
+  private int compact (int length, int done)
+  {
+    if (done > 0) {
+      if (byteInput) {
+        System.arraycopy (bytes, done, bytes, 0, length - done);
+      }
+      else {
+        System.arraycopy (chars, done, chars, 0, length - done);
+      }
+      bufferOffset += done;
+      scanned -= done;
+    }
+    return length - done;
+  }
+
+
+  /** Matches the complete lines in {@code chars[0..length)}, or all lines
+   *  if {@code eof}. Returns the offset after the last line that was matched.
+   */
+  private int charLines (int length, boolean eof)
+  {
+    final int end = eof ? length : lastNewline (length) + 1;
+    scanned = length;
+    if (end <= 0) return 0;
+
+    final NativeSubject subject = md.subject;
+    subject.set (chars, end);
+
+    for (int s = 0; s < end && !stopped; ) {
+      int e = s;
+      while (e < end && chars[e] != '\n') e++;
+      lineStart = s;
+      lineEnd = (e > s && chars[e - 1] == '\r') ? e - 1 : e;
+      matchLine (subject.toWide (lineStart), subject.toWide (lineEnd), false);
+      s = e + 1;
+    }
+    return end;
+  }
+
+
+  /** Matches the complete lines in {@code bytes[0..length)}, or all lines
+   *  if {@code eof}. Returns the offset after the last line that was matched.
+   */
+  private int byteLines (int length, boolean eof)
+  {
+    final int end = eof ? length : lastNewline (length) + 1;
+    scanned = length;
+    if (end <= 0) return 0;
+
+    nativeBytes.set (bytes, 0, end);
+
+    for (int s = 0; s < end && !stopped; ) {
+      int e = s;
+      while (e < end && bytes[e] != '\n') e++;
+      lineStart = s;
+      lineEnd = (e > s && bytes[e - 1] == '\r') ? e - 1 : e;
+      matchLine (lineStart, lineEnd, true);
+      s = e + 1;
+    }
+    return end;
+  }
+
+
+  /** Returns the offset of the last {@code '\n'} in the buffer, or -1.
+   *  The part that was searched before is not searched again.
+   */
+  private int lastNewline (int length)
+  {
+    for (int i = length - 1; i >= scanned; i--) {
+      if (byteInput ? bytes[i] == '\n' : chars[i] == '\n') return i;
+    }
+    return -1;
+  }
+
+
+  /** Matches the current line, from native offset {@code s} to {@code e}. */
+  private void matchLine (int s, int e, boolean byteLine)
+  {
+    lineNumber++;
+    boolean found = false;
+
+    // As in Matcher.find(), an empty match at the end of a line is found
+    // only if the line is empty.
+    for (int offset = s; offset < e || offset == s; ) {
+      final int flags = (offset == s) ? eflags : eflags | REG_NOTBOL;
+      final int result = byteLine ? bytesRe.execBytes (md, nativeBytes.pointer (offset), e - offset, offset, flags)
+                                  : re.exec (md, offset, e, flags);
+      if (!re.matchResult (result)) break;
+      found = true;
+      if (mode == Mode.COUNT) break;
+
+      final int ms = md.startOffset (0);
+      final int me = md.endOffset (0);
+      final int start = byteLine ? ms - s : md.start (0) - lineStart;
+      final int end = byteLine ? me - s : md.end (0) - lineStart;
+      if (!sink.match (lineNumber, start, end, md.cost())) {
+        stopped = true;
+        break;
+      }
+      if (mode == Mode.FIRST) break;
+      offset = (ms == me) ? me + 1 : me;
+    }
+    if (found) matchingLines++;
+  }
+
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final RE re;
+  private NativeRegex bytesRe;  // re, when bytes are matched.
+  private final Mode mode;
+  private final int eflags;
+  private final MatchData md;
+  private final NativeBytes nativeBytes = new NativeBytes();
+  private char[] chars;            // Buffer for Reader.
+  private byte[] bytes;            // Buffer for InputStream.
+  private boolean byteInput;
+  private Sink sink;
+  private long matchingLines;
+  private long lineNumber;
+  private long bufferOffset;       // Offset of the buffer from the start of the input.
+  private int scanned;             // Offsets before this have no '\n' (in the part not matched yet).
+  private int lineStart;           // Current line within the buffer.
+  private int lineEnd;
+  private boolean stopped;
+}
@@ -0,0 +1,408 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Rejects strings that cannot match a regular expression without calling
+ *  the TRE library.<p>
+ *
+ *  When a regular expression is compiled, the literals that every match
+ *  must contain are taken from it. For example, {@code ERROR .* timeout}
+ *  requires {@code "ERROR "} and {@code " timeout"}. A string that does not
+ *  contain them cannot match, and it is not copied to native memory or
+ *  matched. The strings are searched with {@code String.indexOf}, or with
+ *  the Boyer-Moore-Horspool algorithm if {@code REG_ICASE} is set.<p>
+ *
+ *  For a fuzzy regular expression with at most {@code k} errors, the
+ *  longest required literal is split to {@code k + 1} pieces. A match
+ *  has at most {@code k} errors, so at least one piece must be in the
+ *  string exactly (the pigeonhole principle).<p>
+ *
+ *  Only literals outside groups and alternations are used, so a pattern
+ *  with {@code |} at the top level has no prefilter. System property
+ *  {@code javatre.prefilter=false} turns prefilters off.
+ */
+public final class LiteralPrefilter {
+  /** Returns a prefilter for a regular expression, or {@code null}
+   *  if it has no required literals.
+   *
+   * @param regex  Regular expression.
+   * @param cflags Compilation flags.
+   * @param params Fuzzy regular expression parameters, or {@code null}.
+   */
+  static LiteralPrefilter of (String regex, int cflags, regaparams_t params)
+  {
+    if ("false".equals (System.getProperty ("javatre.prefilter"))) {
+      return null;
+    }
+
+    List<String> literals = requiredLiterals (regex, cflags);
+    if (literals.isEmpty()) {
+      return null;
+    }
+    literals.sort (Comparator.comparingInt (String::length).reversed());
+
+    final boolean fold = (cflags & REG_ICASE) != 0;
+    if (params == null) {
+      // The longest literals reject the most strings.
+      return new LiteralPrefilter (literals.subList (0, Math.min (3, literals.size())), true, fold);
+    }
+
+    final String longest = literals.get (0);
+    final int k = maxErrors (params);
+    if (k < 0 || k >= longest.length()) {
+      return null;  // Some piece would be empty.
+    }
+    List<String> pieces = new ArrayList<>();
+    for (int i = 0; i <= k; i++) {
+      pieces.add (longest.substring (longest.length() * i / (k + 1), longest.length() * (i + 1) / (k + 1)));
+    }
+    return new LiteralPrefilter (pieces, false, fold);
+  }
+
+
+  private LiteralPrefilter (List<String> literals, boolean all, boolean fold)
+  {
+    this.literals = new ArrayList<> (literals);
+    this.all = all;
+    this.fold = fold;
+    this.patterns = new char[literals.size()][];
+    this.shifts = new int[literals.size()][];
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i] = fold ? fold (literals.get (i)) : literals.get (i).toCharArray();
+      shifts[i] = shiftTable (patterns[i]);
+    }
+  }
+
+
+  /** Returns {@code false} if no match can start at or after {@code from}
+   *  in {@code s}, {@code true} if a match is possible.
+   */
+  boolean mayMatch (CharSequence s, int from)
+  {
+    boolean result = all;
+    for (int i = 0; i < patterns.length; i++) {
+      final boolean found = indexOf (s, from, i) >= 0;
+      if (found != all) {
+        result = found;
+        break;
+      }
+    }
+    if (result) passed.increment(); else skipped.increment();
+    return result;
+  }
+
+
+  /** Returns the literals. If this is for an ordinary regular expression,
+   *  a string must contain all of them; if for a fuzzy one, at least one.
+   */
+  public List<String> literals()
+  {
+    return Collections.unmodifiableList (literals);
+  }
+
+
+  /** Returns the number of strings that were matched by TRE. */
+  public long passed()
+  {
+    return passed.sum();
+  }
+
+
+  /** Returns the number of strings that were rejected without TRE. */
+  public long skipped()
+  {
+    return skipped.sum();
+  }
+
+
+  /** Returns the fraction of strings that were rejected without TRE. */
+  public double skipRate()
+  {
+    final long s = skipped.sum();
+    final long total = s + passed.sum();
+    return (total == 0) ? 0.0 : (double)s / total;
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return "LiteralPrefilter[" + (all ? "all of " : "any of ") + literals
+         + ", passed=" + passed() + ", skipped=" + skipped() + "]";
+  }
+
+
+  private int indexOf (CharSequence s, int from, int i)
+  {
+    if (!fold && s instanceof String) {
+      return ((String)s).indexOf (literals.get (i), from);
+    }
+
+    // Boyer-Moore-Horspool.
+    final char[] p = patterns[i];
+    final int[] shift = shifts[i];
+    final int m = p.length;
+    final int last = m - 1;
+    for (int j = from; j + m <= s.length(); ) {
+      final char c = fold (s.charAt (j + last));
+      if (c == p[last]) {
+        int k = last - 1;
+        while (k >= 0 && fold (s.charAt (j + k)) == p[k]) k--;
+        if (k < 0) return j;
+      }
+      j += shift[c & 0xFF];
+    }
+    return -1;
+  }
+
+
+  /** Shift of each char (hashed to 8 bits) when the last char does not match. */
+  private static int[] shiftTable (char[] p)
+  {
+    final int[] shift = new int[256];
+    Arrays.fill (shift, p.length);
+    for (int i = 0; i < p.length - 1; i++) {
+      shift[p[i] & 0xFF] = p.length - 1 - i;  // The smallest shift of the chars with the same hash.
+    }
+    return shift;
+  }
+
+
+  private char fold (char c)
+  {
+    return fold ? Character.toLowerCase (Character.toUpperCase (c)) : c;
+  }
+
+
+  private static char[] fold (String s)
+  {
+    char[] a = new char[s.length()];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = Character.toLowerCase (Character.toUpperCase (s.charAt (i)));
+    }
+    return a;
+  }
+
+
+  /** Returns the maximum number of errors in a fuzzy match, or -1 if there is no limit. */
+  static int maxErrors (regaparams_t p)
+  {
+    long k = Integer.MAX_VALUE;
+    if (p.max_err >= 0) k = Math.min (k, p.max_err);
+    if (p.max_ins >= 0 && p.max_del >= 0 && p.max_subst >= 0) {
+      k = Math.min (k, (long)p.max_ins + p.max_del + p.max_subst);
+    }
+    final int minCost = Math.min (p.cost_ins, Math.min (p.cost_del, p.cost_subst));
+    if (minCost > 0 && p.max_cost >= 0) k = Math.min (k, p.max_cost / minCost);
+    return (k >= Integer.MAX_VALUE) ? -1 : (int)k;
+  }
+
+
+  /** Returns the literals that every match of {@code regex} contains.
+   *  Returns an empty list if none were found.
+   */
+  static List<String> requiredLiterals (String regex, int cflags)
+  {
+    final List<String> literals = new ArrayList<>();
+    if ((cflags & REG_LITERAL) != 0) {
+      if (!regex.isEmpty()) literals.add (regex);
+      return literals;
+    }
+
+    final boolean ere = (cflags & REG_EXTENDED) != 0;
+    if (ere && regex.contains ("(?")) {
+      return literals;  // Flags like (?i) may change the meaning of the literals.
+    }
+    final int n = regex.length();
+    final StringBuilder run = new StringBuilder();
+    int i = 0;
+    while (i < n) {
+      final char c = regex.charAt (i);
+      int literal = -1;  // The char that the atom matches, or -1.
+      int next = i + 1;  // Index after the atom.
+
+      if (c == '\\') {
+        if (i + 1 >= n) break;
+        final char d = regex.charAt (i + 1);
+        next = i + 2;
+        if (!ere && d == '(') {
+          next = skipGroup (regex, i, false);
+        }
+        else if (!ere && d == '|') {
+          return new ArrayList<>();  // Alternation at the top level.
+        }
+        else if (d == 'x') {
+          next = hexEscapeEnd (regex, i + 2);  // \xHH or \x{HHHH}, one char that is not a literal here.
+        }
+        else if (ZERO_WIDTH_ESCAPES.indexOf (d) >= 0) {
+          // Word boundary like \< or \>, not a char.
+        }
+        else if (!Character.isLetterOrDigit (d)) {
+          literal = d;  // Escaped punctuation. \w, \d, \1 etc. are not literals.
+        }
+      }
+      else if (ere && c == '(') {
+        next = skipGroup (regex, i, true);
+      }
+      else if (ere && c == '|') {
+        return new ArrayList<>();
+      }
+      else if (c == '[') {
+        next = skipBracket (regex, i);
+      }
+      else if (c == '.' || c == '^' || c == '$' || (ere && "*+?{".indexOf (c) >= 0)) {
+        // Not a literal.
+      }
+      else if (c == '*' && i > 0) {
+        // A quantifier in a BRE, handled below.
+      }
+      else {
+        literal = c;
+      }
+
+      // A quantified atom is not required (or may be repeated).
+      boolean quantified = false;
+      int q;
+      while ((q = quantifierEnd (regex, next, ere)) > next) {
+        quantified = true;
+        next = q;
+      }
+
+      if (literal >= 0 && !quantified) {
+        run.append ((char)literal);
+      }
+      else if (run.length() > 0) {
+        literals.add (run.toString());
+        run.setLength (0);
+      }
+      i = next;
+    }
+    if (run.length() > 0) literals.add (run.toString());
+    return literals;
+  }
+
+
+  /** Returns the index after the hex digits of a {@code \x} escape
+   *  whose digits start at {@code i}. TRE reads at most two digits, or
+   *  the digits in braces.
+   */
+  private static int hexEscapeEnd (String regex, int i)
+  {
+    final int n = regex.length();
+    if (i < n && regex.charAt (i) == '{') {
+      final int end = regex.indexOf ('}', i);
+      return (end < 0) ? n : end + 1;
+    }
+    int j = i;
+    while (j < n && j < i + 2 && Character.digit (regex.charAt (j), 16) >= 0) j++;
+    return j;
+  }
+
+
+  /** Returns the index after the quantifier at {@code i}, or {@code i} if there is none. */
+  private static int quantifierEnd (String regex, int i, boolean ere)
+  {
+    if (i >= regex.length()) return i;
+    final char c = regex.charAt (i);
+    if (c == '*') return i + 1;
+    if (ere) {
+      if (c == '+' || c == '?') return i + 1;
+      if (c == '{') {
+        final int end = regex.indexOf ('}', i);
+        return (end < 0) ? regex.length() : end + 1;
+      }
+    }
+    else if (c == '\\' && i + 1 < regex.length()) {
+      final char d = regex.charAt (i + 1);
+      if (d == '+' || d == '?') return i + 2;
+      if (d == '{') {
+        final int end = regex.indexOf ("\\}", i);
+        return (end < 0) ? regex.length() : end + 2;
+      }
+    }
+    return i;
+  }
+
+
+  /** Returns the index after the group that starts at {@code i}. */
+  private static int skipGroup (String regex, int i, boolean ere)
+  {
+    final int n = regex.length();
+    int depth = 0;
+    while (i < n) {
+      final char c = regex.charAt (i);
+      if (c == '\\' && i + 1 < n) {
+        final char d = regex.charAt (i + 1);
+        if (!ere && d == '(') depth++;
+        if (!ere && d == ')' && --depth == 0) return i + 2;
+        i += 2;
+      }
+      else if (c == '[') {
+        i = skipBracket (regex, i);
+      }
+      else {
+        if (ere && c == '(') depth++;
+        if (ere && c == ')' && --depth == 0) return i + 1;
+        i++;
+      }
+    }
+    return n;
+  }
+
+
+  /** Returns the index after the bracket expression that starts at {@code i}. */
+  static int skipBracket (String regex, int i)
+  {
+    final int n = regex.length();
+    i++;
+    if (i < n && regex.charAt (i) == '^') i++;
+    if (i < n && regex.charAt (i) == ']') i++;  // ']' first is literal.
+    while (i < n && regex.charAt (i) != ']') {
+      if (regex.charAt (i) == '[' && i + 1 < n && ":.=".indexOf (regex.charAt (i + 1)) >= 0) {
+        // [:class:], [.coll.] or [=equiv=]
+        final int end = regex.indexOf (regex.charAt (i + 1) + "]", i + 2);
+        i = (end < 0) ? n : end + 2;
+      }
+      else {
+        i++;
+      }
+    }
+    return Math.min (i + 1, n);
+  }
+
+
+  /** Escapes of punctuation that are zero-width assertions in TRE, not chars. */
+  private static final String ZERO_WIDTH_ESCAPES = "<>`'";
+
+  private final List<String> literals;
+  private final boolean all;        // true: all literals are needed, false: any one.
+  private final boolean fold;       // REG_ICASE.
+  private final char[][] patterns;  // Literals, case folded if fold.
+  private final int[][] shifts;
+  private final LongAdder passed = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+}
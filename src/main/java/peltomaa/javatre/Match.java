@@ -0,0 +1,147 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.regex.MatchResult;
+
+
+/** The result of a match: the offsets of the submatches and, for
+ *  a fuzzy match, its cost and the numbers of edits
+ *  (see <a href="TRE.regamatch_t.html">regamatch_t</a>).<p>
+ *
+ *  Unlike a {@link Matcher}, a {@code Match} does not change after it has
+ *  been made. See {@link RE#bestMatch(String,int)}.
+ */
+public final class Match implements MatchResult {
+  /** Copies the results from {@code md}.
+   *
+   * @param string The string that was matched.
+   * @param md     Match data of a successful match.
+   * @param fuzzy  {@code true} if the cost should be read from {@code md}.
+   */
+  Match (String string, MatchData md, boolean fuzzy)
+  {
+    this (string, md, 0, fuzzy);
+  }
+
+
+  /** Copies the results from {@code md} whose string is a part of
+   *  {@code string} that starts at {@code base}.
+   *
+   * @param string The string that was matched.
+   * @param md     Match data of a successful match.
+   * @param base   Char offset of the string of {@code md} within {@code string}.
+   * @param fuzzy  {@code true} if the cost should be read from {@code md}.
+   */
+  Match (String string, MatchData md, int base, boolean fuzzy)
+  {
+    this.string = string;
+    this.offsets = new int[2 * md.nmatch()];
+    for (int i = 0; i < 2 * md.nmatch(); i++) {
+      final int offset = ((i & 1) == 0) ? md.start (i / 2) : md.end (i / 2);
+      offsets[i] = (offset < 0) ? offset : base + offset;
+    }
+    this.cost     = fuzzy ? md.cost() : 0;
+    this.numIns   = fuzzy ? md.numIns() : 0;
+    this.numDel   = fuzzy ? md.numDel() : 0;
+    this.numSubst = fuzzy ? md.numSubst() : 0;
+  }
+
+
+  @Override
+  public int start()
+  {
+    return start (0);
+  }
+
+
+  @Override
+  public int start (int group)
+  {
+    return offsets[2 * group];
+  }
+
+
+  @Override
+  public int end()
+  {
+    return end (0);
+  }
+
+
+  @Override
+  public int end (int group)
+  {
+    return offsets[2 * group + 1];
+  }
+
+
+  @Override
+  public String group()
+  {
+    return group (0);
+  }
+
+
+  /** Returns the {@code group}th submatch, or {@code null} if it did not match. */
+  @Override
+  public String group (int group)
+  {
+    final int s = start (group);
+    return (s < 0) ? null : string.substring (s, end (group));
+  }
+
+
+  /** Returns the number of groups, not counting the whole match.
+   *  As in {@link Matcher#nmatch()}, this is the number of {@code (}s in the regex.
+   */
+  @Override
+  public int groupCount()
+  {
+    return offsets.length / 2 - 1;
+  }
+
+
+  /** Returns the cost of the match, 0 for an exact match. */
+  public int cost() {return cost;}
+
+  /** Returns the number of inserts. */
+  public int numIns() {return numIns;}
+
+  /** Returns the number of deletes. */
+  public int numDel() {return numDel;}
+
+  /** Returns the number of substitutes. */
+  public int numSubst() {return numSubst;}
+
+
+  @Override
+  public String toString()
+  {
+    return "Match[" + start() + "-" + end() + " \"" + group() + "\", cost=" + cost
+         + ", ins=" + numIns + ", del=" + numDel + ", subst=" + numSubst + "]";
+  }
+
+
+  private final String string;
+  private final int[] offsets;  // Start and end of each submatch, in chars.
+  private final int cost;
+  private final int numIns;
+  private final int numDel;
+  private final int numSubst;
+}
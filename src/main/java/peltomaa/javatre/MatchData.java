@@ -0,0 +1,285 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+import java.util.Arrays;
+import static peltomaa.javatre.TRE.*;
+
+
+/** State of one match: the string in native memory, the native
+ *  {@code regmatch_t} array (and {@code regamatch_t} for fuzzy matching)
+ *  that TRE writes, and the offsets and costs read from them.<p>
+ *
+ *  A compiled {@link RE} has no state that changes when it is matched,
+ *  so many threads can use the same {@code RE} at the same time. Each
+ *  {@link Matcher} has its own {@code MatchData}, and
+ *  {@link RE#wexec(String,int)} uses a {@code MatchData} of the calling
+ *  thread.<p>
+ *
+ *  This class is not thread safe.
+ */
+final class MatchData {
+  /** Constructor.
+   *
+   * @param nmatch Size of the submatch array.
+   * @param approx {@code true} for fuzzy matching ({@code regamatch_t} is needed).
+   */
+  MatchData (int nmatch, boolean approx)
+  {
+    this (nmatch, approx, new NativeSubject());
+  }
+
+
+  /** Constructor for match data that shares the string with other match data.
+   *
+   * @param nmatch  Size of the submatch array.
+   * @param approx  {@code true} for fuzzy matching ({@code regamatch_t} is needed).
+   * @param subject The string that is matched.
+   */
+  MatchData (int nmatch, boolean approx, NativeSubject subject)
+  {
+    this.subject = subject;
+    this.nmatch = nmatch;
+    this.offsets = new int[2 * nmatch];
+    Arrays.fill (offsets, -1);
+
+    if (approx) {
+      AMatch a = new AMatch (nmatch);
+      a.write();  // Native code reads nmatch and pmatch.
+      amatch = a.getPointer();
+      pmatch = a.pmatch.getPointer();
+      amatchStructure = a;
+      NativeResources.bufferAllocated (a, a.size() + nmatch * (long)DirectTRE.REGMATCH_SIZE);
+    }
+    else {
+      amatch = null;
+      pmatch = new Memory (nmatch * (long)DirectTRE.REGMATCH_SIZE);
+      amatchStructure = null;
+      NativeResources.bufferAllocated (pmatch, ((Memory)pmatch).size());
+    }
+  }
+
+
+  /** Returns the size of the submatch array. */
+  int nmatch()
+  {
+    return nmatch;
+  }
+
+
+  /** Returns the native {@code regmatch_t} array. */
+  Pointer pmatch()
+  {
+    return pmatch;
+  }
+
+
+  /** Returns the native {@code regamatch_t}, or {@code null} if this is
+   *  not for fuzzy matching.
+   */
+  Pointer amatch()
+  {
+    return amatch;
+  }
+
+
+  /** Records that a match succeeded. The results are read from native
+   *  memory only when they are needed, with one bulk read of the
+   *  {@code regmatch_t} array, so callers that only need to know whether
+   *  the string matched read nothing. The results are valid until the
+   *  next match with this match data.
+   *
+   * @param base Wide offset of the first matched character within {@link #subject}.
+   *             This is added to the offsets.
+   */
+  void read (int base)
+  {
+    this.base = base;
+    this.unread = true;
+  }
+
+
+  /** Records that a match failed. All submatches are then -1. */
+  void clear()
+  {
+    if (unread || offsets[0] >= 0) {
+      unread = false;
+      Arrays.fill (offsets, -1);
+      cost = numIns = numDel = numSubst = 0;
+    }
+  }
+
+
+  /** Reads the results of the last successful match from native memory. */
+  private void load()
+  {
+    unread = false;
+    pmatch.read (0, offsets, 0, offsets.length);
+    if (base != 0) {
+      for (int i = 0; i < offsets.length; i++) {
+        if (offsets[i] >= 0) offsets[i] += base;
+      }
+    }
+    if (amatch != null) {
+      cost     = amatch.getInt (COST);
+      numIns   = amatch.getInt (COST + 4);
+      numDel   = amatch.getInt (COST + 8);
+      numSubst = amatch.getInt (COST + 12);
+    }
+  }
+
+
+  /** Sets the results of a match that was found in Java. There are no
+   *  submatches.
+   *
+   * @param start Wide offset of the start of the match within {@link #subject}.
+   * @param end   Wide offset of the end of the match.
+   */
+  void set (int start, int end, int cost, int numIns, int numDel, int numSubst)
+  {
+    unread = false;
+    Arrays.fill (offsets, -1);
+    offsets[0] = start;
+    offsets[1] = end;
+    this.cost     = cost;
+    this.numIns   = numIns;
+    this.numDel   = numDel;
+    this.numSubst = numSubst;
+  }
+
+
+  /** Returns the start offset of the {@code n}th submatch in Java chars,
+   *  or -1 if it does not exist.
+   */
+  int start (int n)
+  {
+    if (unread) load();
+    final int s = offsets[2 * n];
+    return (s < 0) ? s : subject.toChar (s);
+  }
+
+
+  /** Returns the end offset of the {@code n}th submatch in Java chars,
+   *  or -1 if it does not exist.
+   */
+  int end (int n)
+  {
+    if (unread) load();
+    final int e = offsets[2 * n + 1];
+    return (e < 0) ? e : subject.toChar (e);
+  }
+
+
+  /** Returns the start offset of the {@code n}th submatch as TRE gave it
+   *  (plus {@code base} of {@link #read(int)}), or -1 if it does not exist.
+   *  For byte matching, this is a byte offset.
+   */
+  int startOffset (int n)
+  {
+    if (unread) load();
+    return offsets[2 * n];
+  }
+
+
+  /** Returns the end offset of the {@code n}th submatch as TRE gave it
+   *  (plus {@code base} of {@link #read(int)}), or -1 if it does not exist.
+   */
+  int endOffset (int n)
+  {
+    if (unread) load();
+    return offsets[2 * n + 1];
+  }
+
+
+  /** Returns the submatches as {@code regmatch_t} objects, with offsets in Java chars. */
+  regmatch_t[] toPmatch()
+  {
+    regmatch_t[] p = new regmatch_t[nmatch];
+    for (int i = 0; i < nmatch; i++) {
+      p[i] = new regmatch_t();
+      p[i].rm_so = start (i);
+      p[i].rm_eo = end (i);
+    }
+    return p;
+  }
+
+
+  /** Cost of the last fuzzy match. */
+  int cost()
+  {
+    if (unread) load();
+    return cost;
+  }
+
+
+  /** Number of inserts in the last fuzzy match. */
+  int numIns()
+  {
+    if (unread) load();
+    return numIns;
+  }
+
+
+  /** Number of deletes in the last fuzzy match. */
+  int numDel()
+  {
+    if (unread) load();
+    return numDel;
+  }
+
+
+  /** Number of substitutes in the last fuzzy match. */
+  int numSubst()
+  {
+    if (unread) load();
+    return numSubst;
+  }
+
+
+  /** {@code regamatch_t} with access to the offsets of its fields. */
+  private static final class AMatch extends regamatch_t.ByReference {
+    AMatch (int n)
+    {
+      super (new NativeLong (n));
+    }
+
+    int costOffset()
+    {
+      return fieldOffset ("cost");
+    }
+  }
+
+
+  /** The string that is matched. */
+  final NativeSubject subject;
+
+  private static final int COST = new AMatch (1).costOffset();
+
+  private final int nmatch;
+  private final int[] offsets;   // rm_so and rm_eo of each submatch, wide offsets.
+  private final Pointer pmatch;
+  private final Pointer amatch;
+  private final regamatch_t amatchStructure;  // Owns the memory of amatch and pmatch.
+  private int base;              // Added to the offsets when they are read.
+  private boolean unread;        // The results of the last match are not read yet.
+  private int cost;
+  private int numIns;
+  private int numDel;
+  private int numSubst;
+}
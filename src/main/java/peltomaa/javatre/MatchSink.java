@@ -0,0 +1,35 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+
+/** Receives the matches that {@link RE#scan(java.nio.file.Path,MatchSink)} finds.
+ *  No {@code String} is made for a match; the sink gets only the offsets.
+ */
+@FunctionalInterface
+public interface MatchSink {
+  /** Called for each match, in the order of the offsets.
+   *
+   * @param start Byte offset of the first byte of the match within the file.
+   * @param end   Byte offset of the first byte after the match within the file.
+   * @param cost  Cost of a fuzzy match, 0 for an ordinary regex.
+   *
+   * @return {@code true} to continue, {@code false} to stop scanning.
+   */
+  boolean match (long start, long end, int cost);
+}
@@ -0,0 +1,186 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Finds the matches of a regular expression in a part of a string
+ *  for {@link RE#results(CharSequence,int)}.<p>
+ *
+ *  The part of the string is copied to native memory when the first
+ *  match is needed, so a stream that stops early ({@code findFirst},
+ *  {@code limit}) does not scan the rest of the string.<p>
+ *
+ *  A spliterator can be split at a newline if the regex was compiled with
+ *  {@code REG_NEWLINE} and no match can contain a newline (see
+ *  {@link #splittable}). Each part is then matched separately with the
+ *  same results as the whole string, so a parallel stream uses many threads.
+ */
+final class MatchSpliterator implements Spliterator<Match> {
+  /** Parts shorter than this are not split. */
+  static final int MIN_SPLIT = 1 << 16;
+
+
+  /** Constructor.
+   *
+   * @param re     Regular expression.
+   * @param string String to be matched.
+   * @param from   Offset of the first char of the part.
+   * @param to     Offset after the last char of the part.
+   * @param eflags Execution flags.
+   */
+  MatchSpliterator (RE re, String string, int from, int to, int eflags)
+  {
+    this.re = re;
+    this.string = string;
+    this.from = from;
+    this.to = to;
+    this.eflags = eflags;
+    this.splittable = splittable (re);
+  }
+
+
+  @Override
+  public boolean tryAdvance (Consumer<? super Match> action)
+  {
+    if (md == null) {
+      if (from >= to) return false;
+      md = re.newMatchData();
+      md.subject.set (string.subSequence (from, to));
+      offset = from;
+    }
+    if (offset >= to || !re.mayMatch (string, offset)) {
+      offset = to;
+      return false;
+    }
+
+    int flags = eflags;
+    if (to < string.length()) flags |= REG_NOTEOL;
+    if (offset > 0 && !(newline() && string.charAt (offset - 1) == '\n')) flags |= REG_NOTBOL;
+
+    final int wide = md.subject.toWide (offset - from);
+    if (!re.matchResult (re.exec (md, wide, md.subject.length(), flags))) {
+      offset = to;
+      return false;
+    }
+    final Match match = new Match (string, md, from, fuzzy());
+    if (match.start() >= to && to < string.length()) {
+      offset = to;  // An empty match at the end belongs to the next part.
+      return false;
+    }
+    offset = (match.start() == match.end()) ? nextCharacter (match.end()) : match.end();
+    action.accept (match);
+    return true;
+  }
+
+
+  /** Splits off the first half of the part, up to a newline near the middle. */
+  @Override
+  public Spliterator<Match> trySplit()
+  {
+    if (!splittable || md != null || to - from < MIN_SPLIT) {
+      return null;
+    }
+    final int mid = from + (to - from) / 2;
+    int split = -1;
+    for (int i = mid; i < to - 1; i++) {
+      if (string.charAt (i) == '\n') {
+        split = i + 1;
+        break;
+      }
+    }
+    if (split < 0) {
+      return null;
+    }
+    final MatchSpliterator prefix = new MatchSpliterator (re, string, from, split, eflags);
+    from = split;
+    return prefix;
+  }
+
+
+  @Override
+  public long estimateSize()
+  {
+    return Long.MAX_VALUE;
+  }
+
+
+  @Override
+  public int characteristics()
+  {
+    return ORDERED | NONNULL | IMMUTABLE;
+  }
+
+
+  /** Returns {@code true} if no match of {@code re} can contain a newline,
+   *  so the string can be matched one line at a time. This is a
+   *  conservative check of the pattern: fuzzy regexes can insert a
+   *  newline, and {@code \s}, {@code [:space:]}, {@code [:cntrl:]},
+   *  escapes and control chars may match one.
+   */
+  static boolean splittable (RE re)
+  {
+    if ((re.cflags() & REG_NEWLINE) == 0 || re.aparams() != null) {
+      return false;
+    }
+    final String p = re.pattern();
+    for (int i = 0; i < p.length(); i++) {
+      final char c = p.charAt (i);
+      if (c < ' ' || c == 0x7F) return false;
+      if (c == '\\' && (re.cflags() & REG_LITERAL) == 0 && i + 1 < p.length()
+          && "nrsStvfx".indexOf (p.charAt (i + 1)) >= 0) return false;
+    }
+    return !p.contains ("[:space:]") && !p.contains ("[:cntrl:]");
+  }
+
+
+  private boolean newline()
+  {
+    return (re.cflags() & REG_NEWLINE) != 0;
+  }
+
+
+  private boolean fuzzy()
+  {
+    return re.aparams() != null;
+  }
+
+
+  /** Returns the index of the character after the character at {@code i}. */
+  private int nextCharacter (int i)
+  {
+    if ((i + 1 < to) && Character.isHighSurrogate (string.charAt (i))
+                     && Character.isLowSurrogate (string.charAt (i + 1))) {
+      return i + 2;
+    }
+    return i + 1;
+  }
+
+
+  private final RE re;
+  private final String string;
+  private final int to;
+  private final int eflags;
+  private final boolean splittable;
+  private int from;
+  private int offset;      // Where the next match is searched.
+  private MatchData md;    // null until the first match.
+}
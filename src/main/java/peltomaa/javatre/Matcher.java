@@ -18,9 +18,21 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 package peltomaa.javatre;
 
 import com.sun.jna.*;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.MatchResult;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import static peltomaa.javatre.TRE.*;
 
 
 /** Match regular expressions to strings.<p>
+ *
+ *  A matcher holds the state of the match (offsets of the submatches),
+ *  so it must not be used by many threads at the same time. Many matchers
+ *  can use the same regular expression in different threads.<p>
  *
  *  A matcher is created by calling method
  *  {@link RE#matcher(java.lang.String,int)}
@@ -29,7 +41,7 @@ import com.sun.jna.*;
  *  A matcher can do four different kind of match operations. See
  * {@link #find()}, {@link #lookingAt()}, {@link #matches()}, and {@link #wmatch()}.
  */
-public class Matcher {
+public class Matcher implements MatchResult {
   /** Constructor.
    *
    * @param re     Regular expression.
@@ -39,6 +51,7 @@ public class Matcher {
   protected Matcher (RE re, String string, int eflags)
   {
     this.re = re;
+    this.md = re.newMatchData();
     this.string = string;
     this.eflags = eflags;
 //System.out.println ("Matcher1 " + string + " " + re.pattern());
@@ -72,7 +85,7 @@ public class Matcher {
    */
   public int end (int n)
   {
-    return re.end (n);
+    return md.end (n);
   }
 
 
@@ -85,13 +98,14 @@ public class Matcher {
   }
 
 
-  /** Returns the {@code n}th submatch.
+  /** Returns the {@code n}th submatch, or {@code null} if it does not exist.
    *
    * @param n Index of the submatch.
    */
   public String group (int n)
   {
-    return string.substring (start(n), end(n));
+    final int start = start (n);
+    return (start < 0) ? null : string.substring (start, end (n));
   }
 
 
@@ -99,7 +113,17 @@ public class Matcher {
    */
   public int nmatch()
   {
-    return re.nmatch();
+    return md.nmatch();
+  }
+
+
+  /** Returns the number of submatches, not counting the whole match.
+   *  This is {@code nmatch() - 1}.
+   */
+  @Override
+  public int groupCount()
+  {
+    return md.nmatch() - 1;
   }
 
 
@@ -119,7 +143,7 @@ public class Matcher {
    */
   public int start (int n)
   {
-    return re.start (n);
+    return md.start (n);
   }
 
 
@@ -143,7 +167,7 @@ public class Matcher {
    * @return true if any part of the string matches the regular expression;
    *         otherwise false.
    */
-  public boolean wmatch() {return re.wmatch (string, eflags);}
+  public boolean wmatch() {return wnmatch (eflags);}
 
 
   /** Matches entire string against the regular expression.
@@ -152,7 +176,7 @@ public class Matcher {
    */
   public boolean matches()
   {
-    final boolean b = re.wmatch (string, eflags);
+    final boolean b = wnmatch (eflags);
     return (b && (start(0) == 0) && (end(0) == string.length()));
   }
 
@@ -163,37 +187,115 @@ public class Matcher {
    */
   public boolean lookingAt()
   {
-    final boolean b = re.wmatch (string, eflags);
+    final boolean b = wnmatch (eflags);
     return (b && (start(0) == 0));
   }
 
 
-  /** Finds the next substring that matches the regular expression.
+  /** Finds the next substring that matches the regular expression.<p>
+   *
+   *  The string is copied to native memory once, and each call
+   *  matches the rest of the string in place, so finding all matches takes
+   *  time linear in the length of the string. If the previous match was
+   *  empty, the search starts one character after it. After this has
+   *  returned {@code false}, it returns {@code false} until {@link #reset()},
+   *  and there is no match ({@code start()} is -1).
    */
   public boolean find()
   {
-//System.out.println ("F " + string.substring(findOffset) + " " + re.pattern() + " " + (pmatch == null));
-
-    if (firstCall) {
-      firstCall = false;
-      findOffset = 0;
-    }
-    else {
-      findOffset = end();
+    if (!done) {
+      final int offset = findOffset;
+      if (offset < string.length() && re.mayMatch (string, offset)) {
+        final int wideOffset = subject().toWide (offset);
+        if (re.matchResult (re.exec (md, wideOffset, findEflags (offset)))) {
+          findOffset = (start() == end()) ? nextCharacter (end()) : end();
+          return true;
+        }
+      }
+      done = true;
     }
+    md.clear();
+    return false;
+  }
 
-    if (findOffset >= string.length()) {
+
+  /** Returns the rest of the matches as a stream. Each element is found
+   *  with {@link #find()} when the stream needs it, and it does not change
+   *  when this matcher finds the next match. This matcher must not be
+   *  used while the stream is used.<p>
+   *
+   *  The stream is sequential; see {@link RE#results(CharSequence,int)}
+   *  for a stream that can be split.
+   */
+  public Stream<Match> results()
+  {
+    final boolean fuzzy = (re.aparams() != null);
+    return StreamSupport.stream (new Spliterators.AbstractSpliterator<Match> (Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+      @Override
+      public boolean tryAdvance (Consumer<? super Match> action)
+      {
+        if (!find()) return false;
+        action.accept (new Match (string, md, fuzzy));
+        return true;
+      }
+    }, false);
+  }
+
+
+  /** Matches the whole string in native memory.
+   */
+  private boolean wnmatch (int eflags)
+  {
+    if (!re.mayMatch (string, 0)) {
+      md.clear();
       return false;
     }
+    subject();
+    return re.matchResult (re.exec (md, 0, eflags));
+  }
+
+
+  /** Returns the string in native memory. The string is copied to
+   *  native memory once after each {@link #reset(String,int)}.
+   */
+  private NativeSubject subject()
+  {
+    if (!subjectValid) {
+      md.subject.set (string);
+      subjectValid = true;
+    }
+    return md.subject;
+  }
 
-    boolean b = re.wmatch (string.substring(findOffset), eflags);
-    if (!b) {
-      return false;
+
+  /** Returns the execution flags for matching from {@code offset}.<p>
+   *
+   *  {@code REG_NOTBOL} is set unless {@code offset} is the start of the
+   *  string, or the start of a line and the regex was compiled with
+   *  {@code REG_NEWLINE}.
+   */
+  private int findEflags (int offset)
+  {
+    if (offset == 0) {
+      return eflags;
+    }
+    if (((re.cflags() & REG_NEWLINE) != 0) && (string.charAt (offset - 1) == '\n')) {
+      return eflags;
     }
+    return eflags | REG_NOTBOL;
+  }
 
-    re.setOffsets (findOffset);
 
-    return true;
+  /** Returns the index of the character after the character at {@code i}.
+   *  A surrogate pair is one character.
+   */
+  private int nextCharacter (int i)
+  {
+    if ((i + 1 < string.length()) && Character.isHighSurrogate (string.charAt (i))
+                                  && Character.isLowSurrogate (string.charAt (i + 1))) {
+      return i + 2;
+    }
+    return i + 1;
   }
 
 
@@ -202,7 +304,8 @@ public class Matcher {
   public Matcher reset()
   {
     this.findOffset = 0;
-    this.firstCall = true;
+    this.appendPosition = 0;
+    this.done = false;
     return this;
   }
 
@@ -216,45 +319,112 @@ public class Matcher {
   {
     this.string = string;
     this.eflags = eflags;
+    this.subjectValid = false;
     return reset();
   }
 
 
   /** Non-terminal append-and-replace step.<p>
    *  See {@code void test6()} in AppTest.java for an example.
+   *  The replacement is parsed again only if it is not the same string
+   *  as in the previous call.
    */
   public Matcher appendReplacement (StringBuffer sb, String replacement)
   {
-    sb.append (string.substring (findOffset,start()))
-      .append (parseReplacement (replacement));
-//System.out.println ("app  " + findOffset + " " + start() + " " + end() + " " + replacement + " " + parseReplacement(replacement));
+    sb.append (string, appendPosition, start());
+    replacer (replacement).expand (this, string, sb);
+    appendPosition = end();
+    return this;
+  }
+
+
+  /** Non-terminal append-and-replace step.
+   *
+   * @param sb          Gets the string up to the match, and the replacement.
+   * @param replacement Replacement template, see {@link Replacer}.
+   */
+  public Matcher appendReplacement (StringBuilder sb, String replacement)
+  {
+    sb.append (string, appendPosition, start());
+    replacer (replacement).expand (this, string, sb);
+    appendPosition = end();
     return this;
   }
 
 
+  /** Returns the parsed {@code replacement}. The last one is kept, so a
+   *  loop of {@code appendReplacement} calls parses it only once.
+   */
+  private Replacer replacer (String replacement)
+  {
+    if (replacer == null || replacer.template() != replacement) {
+      replacer = new Replacer (re, replacement);
+    }
+    return replacer;
+  }
+
+
   /** Terminal append-and-replace step.<p>
    *  See {@code void test6()} in AppTest.java for an example.
    */
   public Matcher appendTail (StringBuffer sb)
   {
-    sb.append (string.substring(end()));
-//System.out.println ("tail " + findOffset + " " + start() + " " + end() + " " + string.substring(end()));
+    sb.append (string, appendPosition, string.length());
+    return this;
+  }
+
+
+  /** Terminal append-and-replace step.
+   *
+   * @param sb Gets the rest of the string.
+   */
+  public Matcher appendTail (StringBuilder sb)
+  {
+    sb.append (string, appendPosition, string.length());
     return this;
   }
 
 
   /** Replaces all matches with replacement string.
    *
-   * @param replacement Replacement string.
+   * @param replacement Replacement template, see {@link Replacer}.
    */
-  String replaceAll (String replacement)
+  public String replaceAll (String replacement)
   {
+    final Replacer replacer = new Replacer (re, replacement);
     reset();
-    StringBuffer sb = new StringBuffer();
-    while (find()) {
-      appendReplacement (sb, replacement);
+    if (!find()) {
+      return string;
     }
-    appendTail (sb);
+    final StringBuilder sb = new StringBuilder (string.length() + 16);
+    do {
+      sb.append (string, appendPosition, start());
+      replacer.expand (this, string, sb);
+      appendPosition = end();
+    } while (find());
+    sb.append (string, appendPosition, string.length());
+    return sb.toString();
+  }
+
+
+  /** Replaces all matches with the strings that {@code replacer} returns.
+   *  {@code replacer} gets this matcher, so it must not keep it.
+   *
+   * @param replacer Returns the replacement of a match.
+   */
+  public String replaceAll (Function<MatchResult,String> replacer)
+  {
+    reset();
+    if (!find()) {
+      return string;
+    }
+    final StringBuilder sb = new StringBuilder (string.length() + 16);
+    do {
+      sb.append (string, appendPosition, start());
+      sb.append (replacer.apply (this));
+      appendPosition = end();
+    } while (find());
+    sb.append (string, appendPosition, string.length());
     return sb.toString();
   }
 
@@ -275,83 +445,13 @@ public class Matcher {
   }
 
 
-  private String parseReplacement (String s)
-  {
-    StringBuilder sb = new StringBuilder();
-
-    for (int i = 0; i < s.length(); i++) {
-      if (s.charAt(i) == '\\') {
-        if ((i == s.length() - 1) || (s.charAt(i+1) != '$')) {
-          sb.append ('\\');
-        }
-        else {
-          sb.append ('$');
-          i++;
-        }
-      }
-      else if (s.charAt(i) == '$') {
-        if (i == s.length()-1) {
-          throw new IllegalArgumentException ("Unquoted '$' can not be the last character in replacement string.");
-        }
-        else if (isLatin1Digit (s.charAt(i+1))) {
-          int k = i + 1;
-          while (k < s.length() && isLatin1Digit (s.charAt(k))) {
-            k++;
-          }
-          final int g = Integer.valueOf (s.substring (i+1, k)).intValue();
-          if (groupOK (g)) {
-            sb.append (group (g));
-            i = k;
-          }
-          else {
-            throw new IndexOutOfBoundsException ("No group number " + g + ".");
-          }
-        }
-        else {
-          throw new IllegalArgumentException ("Not a group number.");
-        }
-      }
-      else {
-        sb.append (s.charAt(i));
-      }
-    }
-    return sb.toString();
-  }
-
-
-  private boolean isLatin1Digit (char ch)
-  {
-    switch (ch) {
-      case '0':
-      case '1':
-      case '2':
-      case '3':
-      case '4':
-      case '5':
-      case '6':
-      case '7':
-      case '8':
-      case '9':
-        return true;
-      default:
-        return false;
-    }
-  }
-
-
-  private boolean groupOK (int g)
-  {
-    if (g >= nmatch()) {
-      return false;
-    }
-    else {
-      return (start(g) >= 0);
-    }
-  }
-
   private RE re;
+  private final MatchData md;  /* Results of the last match, and string in native memory. */
   private String string;
   private int eflags;
-  private int findOffset = 0;  /* Index to start searching in find(). */
-  private boolean firstCall = true;
+  private int findOffset = 0;  /* Index to start the next search in find(). */
+  private int appendPosition = 0;  /* Index to start appending in appendReplacement() and appendTail(). */
+  private boolean subjectValid = false;  /* Does md.subject contain string? */
+  private boolean done = false;  /* Has find() failed since reset()? */
+  private Replacer replacer;  /* Replacement of the last appendReplacement(). */
 }
@@ -0,0 +1,312 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Counts the compilations and matches of regular expressions, and logs
+ *  slow matches.<p>
+ *
+ *  Metrics are off by default, and then the cost is one read of a
+ *  {@code volatile} field for each compilation and match. They are turned
+ *  on with {@link #setEnabled(boolean)} or with the system property
+ *  {@code javatre.metrics=true}, which also registers the MBean
+ *  {@code peltomaa.javatre:type=Metrics} (see {@link #registerMBean()}).<p>
+ *
+ *  The counters are {@code LongAdder}s, so threads that match at the same
+ *  time do not contend for them. The statistics of each pattern are kept
+ *  for at most {@value #MAX_PATTERNS} patterns; the rest are counted
+ *  together as pattern {@code "(other)"}.<p>
+ *
+ *  A match that takes longer than the slow match threshold
+ *  ({@link #setSlowMatchThresholdMillis(long)} or the system property
+ *  {@code javatre.slowMatchMillis}) is logged at level {@code WARNING} to
+ *  the {@code java.util.logging} logger {@code peltomaa.javatre.Metrics},
+ *  with the pattern, the compilation flags, the fuzzy matching parameters
+ *  and the length of the input. The input itself is not logged.
+ */
+public final class Metrics {
+  /** Maximum number of patterns with their own statistics. */
+  public static final int MAX_PATTERNS = 1000;
+
+
+  private Metrics() {}
+
+
+  /** Returns {@code true} if metrics are enabled. */
+  public static boolean isEnabled()
+  {
+    return enabled;
+  }
+
+
+  /** Turns metrics on or off. */
+  public static void setEnabled (boolean on)
+  {
+    enabled = on;
+  }
+
+
+  /** Returns the slow match threshold in milliseconds, 0 if slow matches are not logged. */
+  public static long slowMatchThresholdMillis()
+  {
+    return slowNanos / 1000000;
+  }
+
+
+  /** Sets the slow match threshold in milliseconds. 0 turns the slow match log off. */
+  public static void setSlowMatchThresholdMillis (long millis)
+  {
+    slowNanos = Math.max (0, millis) * 1000000;
+  }
+
+
+  /** Adds a listener that gets each compilation and match. */
+  public static void addListener (MetricsListener listener)
+  {
+    listeners.add (listener);
+  }
+
+
+  /** Removes a listener. */
+  public static void removeListener (MetricsListener listener)
+  {
+    listeners.remove (listener);
+  }
+
+
+  /** Returns the number of compiled regular expressions. */
+  public static long compileCount() {return compiles.sum();}
+
+  /** Returns the number of regular expressions that did not compile. */
+  public static long compileErrorCount() {return compileErrors.sum();}
+
+  /** Returns the total time of compilations in nanoseconds. */
+  public static long compileNanos() {return compileNanos.sum();}
+
+  /** Returns the number of matches. */
+  public static long execCount() {return execs.sum();}
+
+  /** Returns the total time of matches in nanoseconds. */
+  public static long execNanos() {return execNanos.sum();}
+
+  /** Returns the number of matches that returned {@code REG_NOMATCH}. */
+  public static long noMatchCount() {return noMatches.sum();}
+
+  /** Returns the number of matches that returned {@code REG_ESPACE}. */
+  public static long espaceCount() {return espace.sum();}
+
+  /** Returns the total length of the matched strings. */
+  public static long inputChars() {return inputChars.sum();}
+
+  /** Returns the number of slow matches. */
+  public static long slowMatchCount() {return slowMatches.sum();}
+
+  /** Returns the histogram of the times of all matches, see {@link PatternStats#getLatencyHistogram()}. */
+  public static long[] latencyHistogram() {return latency.counts();}
+
+
+  /** Returns the statistics of each pattern, the most time consuming first. */
+  public static List<PatternStats> patterns()
+  {
+    final List<PatternStats> list = new ArrayList<> (patterns.values());
+    if (other.getCount() > 0) {
+      list.add (other);
+    }
+    list.sort (Comparator.comparingLong (PatternStats::getTotalNanos).reversed());
+    return list;
+  }
+
+
+  /** Sets all counts to 0 and forgets the statistics of the patterns. */
+  public static void reset()
+  {
+    compiles.reset();
+    compileErrors.reset();
+    compileNanos.reset();
+    execs.reset();
+    execNanos.reset();
+    noMatches.reset();
+    espace.reset();
+    inputChars.reset();
+    slowMatches.reset();
+    latency.reset();
+    patterns.clear();
+    other = new PatternStats ("(other)", 0);
+    generation++;
+  }
+
+
+  /** Registers the MBean {@code peltomaa.javatre:type=Metrics} to the
+   *  platform MBean server, if it is not registered yet.
+   *
+   * @return The name of the MBean.
+   */
+  public static synchronized ObjectName registerMBean()
+  {
+    try {
+      final ObjectName name = new ObjectName ("peltomaa.javatre:type=Metrics");
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (!server.isRegistered (name)) {
+        server.registerMBean (new MBean(), name);
+      }
+      return name;
+    }
+    catch (JMException e) {
+      throw new IllegalStateException (e);
+    }
+  }
+
+
+  /** Counts a compilation. Called only if metrics are enabled. */
+  static void compiled (String pattern, int cflags, long nanos, int errcode)
+  {
+    compiles.increment();
+    compileNanos.add (nanos);
+    if (errcode != 0) {
+      compileErrors.increment();
+    }
+    for (MetricsListener l : listeners) {
+      l.compiled (pattern, cflags, nanos, errcode);
+    }
+  }
+
+
+  /** Counts a match. Called only if metrics are enabled. */
+  static void executed (RE re, int length, long nanos, int result)
+  {
+    execs.increment();
+    execNanos.add (nanos);
+    inputChars.add (length);
+    latency.add (nanos);
+    if (result == REG_NOMATCH) {
+      noMatches.increment();
+    }
+    else if (result == REG_ESPACE) {
+      espace.increment();
+    }
+    stats (re).add (length, nanos, result);
+
+    final long slow = slowNanos;
+    if (slow > 0 && nanos >= slow) {
+      slowMatches.increment();
+      if (LOG.isLoggable (Level.WARNING)) {
+        LOG.log (Level.WARNING, "Slow match: {0} ms, pattern {1}, cflags {2}, params {3}, input length {4}",
+                 new Object[] {nanos / 1e6, re.pattern(), re.cflags(), toString (re.aparams()), length});
+      }
+    }
+    for (MetricsListener l : listeners) {
+      l.executed (re, length, nanos, result);
+    }
+  }
+
+
+  /** Returns the statistics of {@code re}. They are looked up once and kept in {@code re}. */
+  private static PatternStats stats (RE re)
+  {
+    PatternStats s = re.stats;
+    if (s != null && re.statsGeneration == generation) {
+      return s;
+    }
+    final String key = re.cflags() + ":" + re.pattern();
+    s = patterns.get (key);
+    if (s == null) {
+      s = (patterns.size() < MAX_PATTERNS) ? patterns.computeIfAbsent (key, k -> new PatternStats (re.pattern(), re.cflags()))
+                                          : other;
+    }
+    re.stats = s;
+    re.statsGeneration = generation;
+    return s;
+  }
+
+
+  private static String toString (regaparams_t p)
+  {
+    if (p == null) {
+      return "none";
+    }
+    return "{cost_ins=" + p.cost_ins + ", cost_del=" + p.cost_del + ", cost_subst=" + p.cost_subst
+         + ", max_cost=" + p.max_cost + ", max_ins=" + p.max_ins + ", max_del=" + p.max_del
+         + ", max_subst=" + p.max_subst + ", max_err=" + p.max_err + "}";
+  }
+
+
+  private static final class MBean implements MetricsMXBean {
+    @Override public boolean isEnabled() {return Metrics.isEnabled();}
+    @Override public void setEnabled (boolean enabled) {Metrics.setEnabled (enabled);}
+    @Override public long getSlowMatchThresholdMillis() {return slowMatchThresholdMillis();}
+    @Override public void setSlowMatchThresholdMillis (long millis) {Metrics.setSlowMatchThresholdMillis (millis);}
+    @Override public long getCompileCount() {return compileCount();}
+    @Override public long getCompileErrorCount() {return compileErrorCount();}
+    @Override public long getCompileNanos() {return compileNanos();}
+    @Override public long getExecCount() {return execCount();}
+    @Override public long getExecNanos() {return execNanos();}
+    @Override public long getNoMatchCount() {return noMatchCount();}
+    @Override public long getEspaceCount() {return espaceCount();}
+    @Override public long getInputChars() {return inputChars();}
+    @Override public long getSlowMatchCount() {return slowMatchCount();}
+    @Override public long[] getLatencyHistogram() {return latencyHistogram();}
+    @Override public List<PatternStats> getPatterns() {return patterns();}
+    @Override public void reset() {Metrics.reset();}
+  }
+
+
+  /** Read by RE before each compilation and match. */
+  static volatile boolean enabled = Boolean.getBoolean ("javatre.metrics");
+
+  private static final Logger LOG = Logger.getLogger (Metrics.class.getName());
+
+  private static volatile long slowNanos = Math.max (0, Long.getLong ("javatre.slowMatchMillis", 0)) * 1000000;
+  private static final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+  private static final LongAdder compiles = new LongAdder();
+  private static final LongAdder compileErrors = new LongAdder();
+  private static final LongAdder compileNanos = new LongAdder();
+  private static final LongAdder execs = new LongAdder();
+  private static final LongAdder execNanos = new LongAdder();
+  private static final LongAdder noMatches = new LongAdder();
+  private static final LongAdder espace = new LongAdder();
+  private static final LongAdder inputChars = new LongAdder();
+  private static final LongAdder slowMatches = new LongAdder();
+  private static final Histogram latency = new Histogram();
+  private static final ConcurrentHashMap<String,PatternStats> patterns = new ConcurrentHashMap<>();
+  private static volatile PatternStats other = new PatternStats ("(other)", 0);
+  private static volatile int generation = 0;  // Incremented by reset(), so that RE.stats are looked up again.
+
+  static {
+    for (MetricsListener l : ServiceLoader.load (MetricsListener.class)) {
+      listeners.add (l);
+    }
+    if (enabled) {
+      registerMBean();
+    }
+  }
+}
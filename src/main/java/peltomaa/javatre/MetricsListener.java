@@ -0,0 +1,48 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+
+/** Gets the events that {@link Metrics} counts, for sending them to
+ *  another metrics library.<p>
+ *
+ *  Listeners are added with {@link Metrics#addListener(MetricsListener)}, or
+ *  found with {@code java.util.ServiceLoader}: list the implementing classes in
+ *  {@code META-INF/services/peltomaa.javatre.MetricsListener}. Listeners
+ *  are called only when metrics are enabled, in the thread that compiles
+ *  or matches, so they must be fast and thread safe.
+ */
+public interface MetricsListener {
+  /** A regular expression was compiled.
+   *
+   * @param pattern Regular expression.
+   * @param cflags  Compilation flags.
+   * @param nanos   Time of {@code tre_regwcomp} in nanoseconds.
+   * @param errcode Return value of {@code tre_regwcomp}, 0 if it succeeded.
+   */
+  default void compiled (String pattern, int cflags, long nanos, int errcode) {}
+
+
+  /** A regular expression was matched.
+   *
+   * @param re     Regular expression.
+   * @param length Length of the matched string in characters (or bytes).
+   * @param nanos  Time of the match in nanoseconds.
+   * @param result Return value of TRE: 0, {@code REG_NOMATCH} or an error code.
+   */
+  default void executed (RE re, int length, long nanos, int result) {}
+}
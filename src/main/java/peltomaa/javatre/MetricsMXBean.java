@@ -0,0 +1,47 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+import java.util.List;
+
+
+/** Management interface of {@link Metrics}, registered as
+ *  {@code peltomaa.javatre:type=Metrics}.
+ */
+public interface MetricsMXBean {
+  boolean isEnabled();
+  void setEnabled (boolean enabled);
+  long getSlowMatchThresholdMillis();
+  void setSlowMatchThresholdMillis (long millis);
+
+  long getCompileCount();
+  long getCompileErrorCount();
+  long getCompileNanos();
+  long getExecCount();
+  long getExecNanos();
+  long getNoMatchCount();
+  long getEspaceCount();
+  long getInputChars();
+  long getSlowMatchCount();
+  long[] getLatencyHistogram();
+
+  /** Returns the statistics of each pattern, the most time consuming first. */
+  List<PatternStats> getPatterns();
+
+  /** Sets all counts to 0. */
+  void reset();
+}
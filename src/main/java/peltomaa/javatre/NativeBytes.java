@@ -0,0 +1,135 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+import java.nio.ByteBuffer;
+
+
+/** Bytes in native memory, for the functions that take a pointer to
+ *  {@code char}s and a length ({@code tre_regnexec} and {@code tre_reganexec}).<p>
+ *
+ *  The bytes of a direct {@code ByteBuffer} are already in native memory,
+ *  and they are used in place. Other bytes are copied to a buffer that grows
+ *  when needed and is never shrunk, as in {@link NativeSubject}.<p>
+ *
+ *  This class is not thread safe.
+ */
+final class NativeBytes {
+  /** Copies {@code len} bytes of {@code bytes} starting at {@code off} to this buffer.
+   *
+   * @param bytes The bytes.
+   * @param off   Offset of the first byte.
+   * @param len   Number of bytes.
+   */
+  void set (byte[] bytes, int off, int len)
+  {
+    if (off < 0 || len < 0 || off > bytes.length - len) {
+      throw new IndexOutOfBoundsException ("off = " + off + ", len = " + len + ", length = " + bytes.length);
+    }
+    ensureCapacity (len);
+    memory.write (0, bytes, off, len);
+    useMemory (len);
+  }
+
+
+  /** Sets the bytes from the position to the limit of {@code buffer}. The
+   *  position and the limit of {@code buffer} are not changed. If
+   *  {@code buffer} is direct, its memory is used and the bytes are not copied.
+   *
+   * @param buffer The bytes.
+   */
+  void set (ByteBuffer buffer)
+  {
+    final int len = buffer.remaining();
+    if (buffer.isDirect()) {
+      direct = buffer;  // Keeps the memory alive.
+      address = Pointer.nativeValue (Native.getDirectBufferPointer (buffer)) + buffer.position();
+      length = len;
+    }
+    else if (buffer.hasArray()) {
+      set (buffer.array(), buffer.arrayOffset() + buffer.position(), len);
+    }
+    else {
+      ensureCapacity (len);
+      for (int i = 0; i < len; i++) {
+        memory.setByte (i, buffer.get (buffer.position() + i));
+      }
+      useMemory (len);
+    }
+  }
+
+
+  /** Returns the number of bytes. */
+  int length()
+  {
+    return length;
+  }
+
+
+  /** Returns the byte at {@code offset}. */
+  byte get (int offset)
+  {
+    return cursor (offset).getByte (0);
+  }
+
+
+  /** Returns a pointer to the {@code offset}th byte.<p>
+   *
+   *  The same {@code Pointer} object is returned by every call, so the
+   *  pointer is valid only until the next call.
+   *
+   * @param offset Byte offset.
+   */
+  Pointer pointer (int offset)
+  {
+    return cursor (offset);
+  }
+
+
+  private Pointer cursor (int offset)
+  {
+    Pointer.nativeValue (cursor, address + offset);
+    return cursor;
+  }
+
+
+  private void useMemory (int len)
+  {
+    direct = null;
+    address = Pointer.nativeValue (memory);
+    length = len;
+  }
+
+
+  private void ensureCapacity (int n)
+  {
+    if (memory == null || n > memory.size()) {
+      final long size = (memory == null) ? Math.max (n, 64) : Math.max (n, memory.size() + (memory.size() >> 1));
+      memory = new Memory (size);
+      NativeResources.bufferAllocated (memory, size);
+    }
+  }
+
+
+  private Memory memory;          // Copied bytes.
+  private ByteBuffer direct;      // Direct buffer whose memory is used.
+  private long address;           // Address of the first byte.
+  private int length;             // Number of bytes.
+  private final Pointer cursor = new Pointer (0);
+}
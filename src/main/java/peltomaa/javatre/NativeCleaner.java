@@ -0,0 +1,104 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/** Runs an action when an object becomes phantom reachable, like
+ *  {@code java.lang.ref.Cleaner} of Java 9, which this project cannot use
+ *  because it is compiled for Java 8.<p>
+ *
+ *  The actions are run by one daemon thread. An action must not refer to
+ *  the object it cleans, otherwise the object never becomes unreachable.
+ */
+final class NativeCleaner {
+  private NativeCleaner() {}
+
+
+  /** Something that can be cleaned once. */
+  static final class Cleanable extends PhantomReference<Object> {
+    private Cleanable (Object obj, Runnable action)
+    {
+      super (obj, QUEUE);
+      this.action = action;
+    }
+
+
+    /** Runs the action if it has not been run yet and unregisters it.
+     *  Can be called from many threads; the action is run only once.
+     */
+    void clean()
+    {
+      if (cleaned.compareAndSet (false, true)) {
+        REFS.remove (this);
+        action.run();
+      }
+    }
+
+
+    private final Runnable action;
+    private final AtomicBoolean cleaned = new AtomicBoolean (false);
+  }
+
+
+  /** Registers an action that is run when {@code obj} becomes phantom reachable,
+   *  unless {@link Cleanable#clean()} has been called before that.
+   *
+   * @param obj    The object.
+   * @param action The action. Must not refer to {@code obj}.
+   */
+  static Cleanable register (Object obj, Runnable action)
+  {
+    Cleanable c = new Cleanable (obj, action);
+    REFS.add (c);
+    return c;
+  }
+
+
+  private static void run()
+  {
+    while (true) {
+      try {
+        ((Cleanable)QUEUE.remove()).clean();
+      }
+      catch (InterruptedException e) {
+        // Daemon thread, keep going.
+      }
+      catch (Throwable t) {
+        // An action failed. Other actions must still run.
+      }
+    }
+  }
+
+
+  private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+
+  /** Keeps the references reachable until they are cleaned. */
+  private static final Set<Cleanable> REFS = Collections.newSetFromMap (new ConcurrentHashMap<>());
+
+  static {
+    Thread t = new Thread (NativeCleaner::run, "javatre-cleaner");
+    t.setDaemon (true);
+    t.start();
+  }
+}
@@ -0,0 +1,140 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+
+
+/** A regular expression that TRE compiles and matches in native memory.<p>
+ *
+ *  This has the native matching of {@link Regex} and {@link FuzzyRegex}.
+ *  A regular expression that is matched in Java (see {@link BitParallelRegex})
+ *  extends {@link RE} directly, so it does not have the methods that match
+ *  characters or bytes at a native pointer.
+ */
+abstract class NativeRegex extends RE {
+  /** Constructor.
+   *
+   * @param regex  Regular expression.
+   * @param cflags Compilation flags.
+   *
+   * @throws RegexSyntaxException if syntax of regex is incorrect.
+   */
+  NativeRegex (String regex, int cflags)
+  {
+    super (regex, cflags);
+  }
+
+
+  /** Matches a regular expression to {@code len} characters in native memory
+   *  by calling {@code tre_regwnexec} or {@code tre_regawnexec}. The results
+   *  go to {@code md}, not to {@code this}.
+   *
+   * @param md     Match data.
+   * @param string Pointer to the first character to be matched.
+   * @param len    Number of characters to be matched.
+   * @param eflags Execution flags.
+   *
+   * @return 0, if string matches regular expression,
+   *         {@code REG_NOMATCH}, if string does not match,
+   *         or an error code, if an error occurs.
+   */
+  abstract int exec (MatchData md, Pointer string, int len, int eflags);
+
+
+  /** Matches a regular expression to the characters from {@code offset}
+   *  to {@code end} of the string in {@code md.subject}. If they match,
+   *  reads the results to {@code md}.
+   *
+   * @param md     Match data.
+   * @param offset Wide offset of the first character to be matched.
+   * @param end    Wide offset of the first character after the characters to be matched.
+   * @param eflags Execution flags.
+   */
+  @Override
+  int exec (MatchData md, int offset, int end, int eflags)
+  {
+    checkOpen();
+    final boolean timed = Metrics.enabled;
+    final long t0 = timed ? System.nanoTime() : 0;
+    final Object event = Jfr.beginExec();
+    final int matchResult = exec (md, md.subject.pointer (offset), end - offset, eflags);
+    // Reading a volatile field of this after the native call keeps this
+    // reachable, so the cleaner cannot free the regex during the call.
+    // (Java 8 does not have Reference.reachabilityFence.)
+    checkOpen();
+    if (timed) {
+      Metrics.executed (this, end - offset, System.nanoTime() - t0, matchResult);
+    }
+    if (matchResult == 0) {
+      md.read (offset);
+    }
+    else {
+      md.clear();
+    }
+    if (event != null) {
+      Jfr.endExec (event, this, end - offset, matchResult, md);  // After read(), so that the cost is of this match.
+    }
+    return matchResult;
+  }
+
+
+  /** Matches a regular expression to {@code len} bytes in native memory
+   *  by calling {@code tre_regnexec} or {@code tre_reganexec}. The results
+   *  go to {@code md}.
+   *
+   * @param md     Match data.
+   * @param string Pointer to the first byte to be matched.
+   * @param len    Number of bytes to be matched.
+   * @param eflags Execution flags.
+   */
+  abstract int nexec (MatchData md, Pointer string, int len, int eflags);
+
+
+  /** Matches a regular expression to {@code len} bytes in native memory.
+   *  If the bytes match, reads the results to {@code md}.
+   *
+   * @param md     Match data.
+   * @param string Pointer to the first byte to be matched.
+   * @param len    Number of bytes to be matched.
+   * @param base   Byte offset of {@code string}, added to the offsets.
+   * @param eflags Execution flags.
+   */
+  final int execBytes (MatchData md, Pointer string, int len, int base, int eflags)
+  {
+    checkOpen();
+    final boolean timed = Metrics.enabled;
+    final long t0 = timed ? System.nanoTime() : 0;
+    final Object event = Jfr.beginExec();
+    final int matchResult = nexec (md, string, len, eflags);
+    checkOpen();  // Keeps this reachable, see exec(MatchData,int,int).
+    if (timed) {
+      Metrics.executed (this, len, System.nanoTime() - t0, matchResult);
+    }
+    if (matchResult == 0) {
+      md.read (base);
+    }
+    else {
+      md.clear();
+    }
+    if (event != null) {
+      Jfr.endExec (event, this, len, matchResult, md);  // After read(), so that the cost is of this match.
+    }
+    return matchResult;
+  }
+}
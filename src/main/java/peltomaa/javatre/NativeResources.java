@@ -0,0 +1,127 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/** Counts the native memory that javatre has allocated and not freed yet.<p>
+ *
+ *  The counts are of the compiled regular expressions and of the native
+ *  buffers of {@link Matcher}s and other match data (the submatch arrays
+ *  and the copies of the strings and bytes that are matched). TRE does not
+ *  tell how much memory a compiled regular expression uses, so its size is
+ *  estimated from the length of the regex. The buffers are freed by JNA
+ *  after they are unreachable, and they are subtracted when
+ *  {@link NativeCleaner} finds that, which may be some time after the
+ *  garbage collector has freed them.<p>
+ *
+ *  So the sizes are estimates. They leave out the memory that TRE allocates
+ *  while it matches, the memory that JNA and the C library use for their
+ *  own bookkeeping, and direct {@code ByteBuffer}s, which are matched in
+ *  place.<p>
+ *
+ *  A compiled regular expression is freed by {@link RE#close()} or, if it is
+ *  not closed, after the garbage collector has found that it is unreachable.
+ *  If {@link #liveRegexCount()} grows all the time, regular expressions are
+ *  compiled faster than they are freed.
+ */
+public final class NativeResources {
+  private NativeResources() {}
+
+
+  /** Returns an estimate of the native memory of the compiled regular
+   *  expressions and of the buffers that have not been freed, in bytes.
+   *  See the class description for what it leaves out.
+   */
+  public static long liveBytes()
+  {
+    return liveBytes.sum() + liveBufferBytes.sum();
+  }
+
+
+  /** Returns the size of the native buffers of match data that have not
+   *  been freed, in bytes. A buffer is counted until {@link NativeCleaner}
+   *  finds that it is unreachable.
+   */
+  public static long liveBufferBytes()
+  {
+    return liveBufferBytes.sum();
+  }
+
+
+  /** Returns the total size of the native buffers of match data that have
+   *  been allocated, in bytes. This includes buffers that have been freed.
+   */
+  public static long bufferBytesAllocated()
+  {
+    return bufferBytes.sum();
+  }
+
+
+  /** Returns the number of compiled regular expressions that have not been freed. */
+  public static long liveRegexCount()
+  {
+    return liveRegexes.sum();
+  }
+
+
+  /** Returns the number of regular expressions that have been compiled. */
+  public static long totalRegexCount()
+  {
+    return totalRegexes.sum();
+  }
+
+
+  /** Adds a compiled regular expression of {@code bytes} bytes. */
+  static void regexAllocated (long bytes)
+  {
+    liveRegexes.increment();
+    totalRegexes.increment();
+    liveBytes.add (bytes);
+  }
+
+
+  /** Removes a compiled regular expression of {@code bytes} bytes. */
+  static void regexFreed (long bytes)
+  {
+    liveRegexes.decrement();
+    liveBytes.add (-bytes);
+  }
+
+
+  /** Adds a buffer of {@code bytes} bytes. JNA frees the memory of a
+   *  {@code Memory} or {@code Structure} object after it is unreachable,
+   *  and the buffer is subtracted from the live bytes after that.
+   *
+   * @param buffer The object that owns the memory.
+   * @param bytes  Size of the memory.
+   */
+  static void bufferAllocated (Object buffer, long bytes)
+  {
+    bufferBytes.add (bytes);
+    liveBufferBytes.add (bytes);
+    NativeCleaner.register (buffer, () -> liveBufferBytes.add (-bytes));
+  }
+
+
+  private static final LongAdder liveBytes = new LongAdder();
+  private static final LongAdder liveRegexes = new LongAdder();
+  private static final LongAdder totalRegexes = new LongAdder();
+  private static final LongAdder bufferBytes = new LongAdder();
+  private static final LongAdder liveBufferBytes = new LongAdder();
+}
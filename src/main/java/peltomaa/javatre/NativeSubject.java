@@ -0,0 +1,304 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+
+/** A reusable buffer that holds a string in native memory as {@code wchar_t}s,
+ *  for the functions that take a pointer and a length ({@code tre_regwnexec}
+ *  and {@code tre_regawnexec}).<p>
+ *
+ *  The buffer grows when needed, so matching many strings with the same
+ *  buffer does not allocate memory once the buffer is large enough. A
+ *  buffer with a retained capacity is shrunk when a string that fits in
+ *  the retained capacity is set after a longer string, so that one long
+ *  string does not keep a large buffer alive.<p>
+ *
+ *  If {@code wchar_t} has 4 bytes (e.g. Linux), the string is stored as
+ *  UTF-32, so a surrogate pair is one {@code wchar_t}. Offsets within the
+ *  native string (<i>wide</i> offsets) then differ from offsets within the
+ *  Java string (<i>char</i> offsets). The buffer remembers where the
+ *  surrogate pairs are, and {@link #toChar(int)} and {@link #toWide(int)}
+ *  convert between the two. If the string has no surrogate pairs (or
+ *  {@code wchar_t} has 2 bytes, e.g. Windows), they are the same.<p>
+ *
+ *  This class is not thread safe.
+ */
+final class NativeSubject {
+  /** Constructs an empty buffer. */
+  NativeSubject()
+  {
+    this (Integer.MAX_VALUE);
+  }
+
+
+  /** Constructs an empty buffer that is shrunk after a string longer
+   *  than {@code retained} characters.
+   *
+   * @param retained Capacity in {@code wchar_t}s that is kept.
+   */
+  NativeSubject (int retained)
+  {
+    this.retained = retained;
+    allocate (16);
+  }
+
+
+  /** Copies {@code string} to this buffer. The old contents are lost.
+   *
+   * @param string The string.
+   */
+  void set (CharSequence string)
+  {
+    final int n = string.length();
+    ensureCapacity (n);
+    pairCount = 0;
+
+    if (Native.WCHAR_SIZE == 2) {
+      chars.clear();
+      if (string instanceof String) {
+        chars.put ((String)string, 0, n);
+      }
+      else {
+        for (int i = 0; i < n; i++) {
+          chars.put (i, string.charAt (i));
+        }
+      }
+      length = n;
+      return;
+    }
+
+    int w = 0;
+    for (int i = 0; i < n; i++, w++) {
+      final char c = string.charAt (i);
+      if (Character.isHighSurrogate (c) && (i + 1 < n) && Character.isLowSurrogate (string.charAt (i + 1))) {
+        ints.put (w, Character.toCodePoint (c, string.charAt (++i)));
+        addPair (w);
+      }
+      else {
+        ints.put (w, c);
+      }
+    }
+    length = w;
+  }
+
+
+  /** Copies the first {@code n} chars of {@code array} to this buffer.
+   *  The old contents are lost.
+   *
+   * @param array The chars.
+   * @param n     Number of chars.
+   */
+  void set (char[] array, int n)
+  {
+    ensureCapacity (n);
+    pairCount = 0;
+
+    if (Native.WCHAR_SIZE == 2) {
+      chars.clear();
+      chars.put (array, 0, n);
+      length = n;
+      return;
+    }
+
+    int w = 0;
+    for (int i = 0; i < n; i++, w++) {
+      final char c = array[i];
+      if (Character.isHighSurrogate (c) && (i + 1 < n) && Character.isLowSurrogate (array[i + 1])) {
+        ints.put (w, Character.toCodePoint (c, array[++i]));
+        addPair (w);
+      }
+      else {
+        ints.put (w, c);
+      }
+    }
+    length = w;
+  }
+
+
+  /** Copies the strings {@code strings[from..to)} one after another to this
+   *  buffer. The old contents are lost. A surrogate pair is not split
+   *  between two strings.
+   *
+   * @param strings The strings.
+   * @param from    Index of the first string.
+   * @param to      Index after the last string.
+   * @param starts  Gets the wide offset of each string, and the length of
+   *                the buffer after the last one ({@code to - from + 1} elements).
+   */
+  void set (List<? extends CharSequence> strings, int from, int to, int[] starts)
+  {
+    int n = 0;
+    for (int k = from; k < to; k++) {
+      n += strings.get (k).length();
+    }
+    ensureCapacity (n);
+    pairCount = 0;
+
+    int w = 0;
+    for (int k = from; k < to; k++) {
+      starts[k - from] = w;
+      final CharSequence string = strings.get (k);
+      final int m = string.length();
+      for (int i = 0; i < m; i++, w++) {
+        final char c = string.charAt (i);
+        if (Native.WCHAR_SIZE == 2) {
+          chars.put (w, c);
+        }
+        else if (Character.isHighSurrogate (c) && (i + 1 < m) && Character.isLowSurrogate (string.charAt (i + 1))) {
+          ints.put (w, Character.toCodePoint (c, string.charAt (++i)));
+          addPair (w);
+        }
+        else {
+          ints.put (w, c);
+        }
+      }
+    }
+    starts[to - from] = w;
+    length = w;
+  }
+
+
+  /** Returns the length of the string in {@code wchar_t}s. */
+  int length()
+  {
+    return length;
+  }
+
+
+  /** Returns a pointer to the {@code offset}th {@code wchar_t}.<p>
+   *
+   *  The same {@code Pointer} object is returned by every call, so the
+   *  pointer is valid only until the next call.
+   *
+   * @param offset Wide offset.
+   */
+  Pointer pointer (int offset)
+  {
+    if (offset == 0) {
+      return memory;
+    }
+    Pointer.nativeValue (cursor, address + offset * (long)Native.WCHAR_SIZE);
+    return cursor;
+  }
+
+
+  /** Converts a wide offset to a char offset.
+   *
+   * @param wide Offset within the native string, from 0 to {@link #length()}.
+   */
+  int toChar (int wide)
+  {
+    if (pairCount == 0) return wide;
+
+    // Each surrogate pair before wide adds one char.
+    int lo = 0;
+    int hi = pairCount;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (pairs[mid] < wide) lo = mid + 1; else hi = mid;
+    }
+    return wide + lo;
+  }
+
+
+  /** Returns the character at wide offset {@code wide}: a UTF-16 char,
+   *  or a code point if {@code wchar_t} has 4 bytes.
+   */
+  int get (int wide)
+  {
+    return (Native.WCHAR_SIZE == 2) ? chars.get (wide) : ints.get (wide);
+  }
+
+
+  /** Converts a char offset to a wide offset. An offset between the
+   *  chars of a surrogate pair is converted to the offset after the pair.
+   *
+   * @param c Offset within the Java string.
+   */
+  int toWide (int c)
+  {
+    if (pairCount == 0) return c;
+
+    // Count the surrogate pairs that end before c. The high surrogate of
+    // the kth pair is at char offset pairs[k] + k.
+    int lo = 0;
+    int hi = pairCount;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (pairs[mid] + mid + 1 < c) lo = mid + 1; else hi = mid;
+    }
+    return c - lo;
+  }
+
+
+  private void addPair (int wide)
+  {
+    if (pairCount == pairs.length) {
+      pairs = Arrays.copyOf (pairs, 2 * pairs.length);
+    }
+    pairs[pairCount++] = wide;
+  }
+
+
+  private void ensureCapacity (int n)
+  {
+    if (n > capacity) {
+      allocate (Math.max (n, capacity + (capacity >> 1)));
+    }
+    else if (capacity > retained && n <= retained) {
+      allocate (Math.max (n, 16));
+      if (pairs.length > 8) pairs = new int[8];
+    }
+  }
+
+
+  private void allocate (int n)
+  {
+    capacity = n;
+    memory = new Memory (n * (long)Native.WCHAR_SIZE);
+    NativeResources.bufferAllocated (memory, memory.size());
+    address = Pointer.nativeValue (memory);
+    ByteBuffer b = memory.getByteBuffer (0, memory.size()).order (ByteOrder.nativeOrder());
+    if (Native.WCHAR_SIZE == 2) {
+      chars = b.asCharBuffer();
+    }
+    else {
+      ints = b.asIntBuffer();
+    }
+  }
+
+
+  private final int retained;     // Capacity that is kept, see ensureCapacity().
+  private Memory memory;
+  private long address;           // Address of memory.
+  private IntBuffer ints;         // View of memory, if wchar_t has 4 bytes.
+  private CharBuffer chars;       // View of memory, if wchar_t has 2 bytes.
+  private int capacity;           // Size of memory in wchar_t's.
+  private int length;             // Length of the string in wchar_t's.
+  private int[] pairs = new int[8];  // Wide offsets of the surrogate pairs.
+  private int pairCount;
+  private final Pointer cursor = new Pointer (0);
+}
@@ -0,0 +1,322 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+
+/** Searches files with many threads.<p>
+ *
+ *  The files are split to chunks of about {@code chunkSize} bytes. A chunk
+ *  ends after a {@code '\n'} (or at the end of the file), so each line is in
+ *  one chunk. The chunks are searched by a {@code ForkJoinPool} with
+ *  {@link RE#scan(Path,MatchSink)}, each thread with its own match data,
+ *  and all threads share the same compiled regular expression.<p>
+ *
+ *  A match that continues over the end of a chunk is cut there, so the
+ *  regular expression should not match {@code '\n'}, for example it
+ *  should be compiled with {@code REG_NEWLINE}. The regular expression
+ *  must be compiled with {@link RE#compileBytes(String,int)}, and offsets
+ *  are byte offsets.<p>
+ *
+ *  Example:
+ *  <pre>
+ *  {@code
+ *  RE re = RE.compileBytes ("kukka", REG_EXTENDED | REG_NEWLINE, AparamsBuilder.build1());
+ *  List<ParallelSearch.Match> matches = new ParallelSearch (re).search (files);
+ *  }
+ *  </pre>
+ */
+public final class ParallelSearch {
+  /** A match in a file. */
+  public static final class Match {
+    Match (Path file, long start, long end, int cost)
+    {
+      this.file = file;
+      this.start = start;
+      this.end = end;
+      this.cost = cost;
+    }
+
+    /** Returns the file. */
+    public Path file() {return file;}
+
+    /** Returns the byte offset of the first byte of the match. */
+    public long start() {return start;}
+
+    /** Returns the byte offset of the first byte after the match. */
+    public long end() {return end;}
+
+    /** Returns the cost of a fuzzy match, 0 for an ordinary regex. */
+    public int cost() {return cost;}
+
+    @Override
+    public String toString()
+    {
+      return file + ":" + start + "-" + end + ((cost != 0) ? " cost " + cost : "");
+    }
+
+    private final Path file;
+    private final long start;
+    private final long end;
+    private final int cost;
+  }
+
+
+  /** Constructor.
+   *
+   * @param re        Regular expression, compiled with {@code REG_USEBYTES}.
+   * @param pool      Threads that search the chunks.
+   * @param chunkSize Size of a chunk in bytes.
+   */
+  public ParallelSearch (RE re, ForkJoinPool pool, long chunkSize)
+  {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException ("chunkSize = " + chunkSize);
+    }
+    this.re = re.checkBytes();
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+  }
+
+
+  /** Constructor. Uses the common pool and chunks of 16 MB.
+   *
+   * @param re Regular expression, compiled with {@code REG_USEBYTES}.
+   */
+  public ParallelSearch (RE re)
+  {
+    this (re, ForkJoinPool.commonPool(), CHUNK_SIZE);
+  }
+
+
+  /** Returns the matches in {@code files}, in the order of the files and
+   *  the offsets.
+   *
+   * @param files Files to be searched.
+   */
+  public List<Match> search (List<Path> files) throws IOException
+  {
+    final List<Chunk> chunks = chunks (files);
+    return invoke (new Search (chunks, 0, chunks.size(), null));
+  }
+
+
+  /** Returns the matches in {@code file}, in the order of the offsets.
+   *  This is equal to {@code search (Collections.singletonList (file))}.
+   *
+   * @param file File to be searched.
+   */
+  public List<Match> search (Path file) throws IOException
+  {
+    return search (Collections.singletonList (file));
+  }
+
+
+  /** Gives the matches in {@code files} to {@code action}, in no particular
+   *  order. {@code action} is called from many threads at the same time,
+   *  and the matches are not collected to a list.
+   *
+   * @param files  Files to be searched.
+   * @param action Receives the matches.
+   */
+  public void forEach (List<Path> files, Consumer<Match> action) throws IOException
+  {
+    final List<Chunk> chunks = chunks (files);
+    invoke (new Search (chunks, 0, chunks.size(), action));
+  }
+
+
+  /** Returns the number of matches in {@code files}.
+   *
+   * @param files Files to be searched.
+   */
+  public long count (List<Path> files) throws IOException
+  {
+    final List<Chunk> chunks = chunks (files);
+    return invoke (new Count (chunks, 0, chunks.size()));
+  }
+
+
+  private <T> T invoke (RecursiveTask<T> task) throws IOException
+  {
+    try {
+      return pool.invoke (task);
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+
+  /** Part of a file. */
+  private static final class Chunk {
+    Chunk (Path file, long from, long to)
+    {
+      this.file = file;
+      this.from = from;
+      this.to = to;
+    }
+
+    final Path file;
+    final long from;
+    final long to;
+  }
+
+
+  /** Splits the files to chunks that end after a newline. */
+  private List<Chunk> chunks (List<Path> files) throws IOException
+  {
+    final List<Chunk> chunks = new ArrayList<>();
+    final ByteBuffer buffer = ByteBuffer.allocate (4096);
+    for (Path file : files) {
+      try (FileChannel channel = FileChannel.open (file, StandardOpenOption.READ)) {
+        final long size = channel.size();
+        long from = 0;
+        while (from < size) {
+          long to = (size - from <= chunkSize) ? size : nextLine (channel, from + chunkSize, buffer);
+          chunks.add (new Chunk (file, from, to));
+          from = to;
+        }
+      }
+    }
+    return chunks;
+  }
+
+
+  /** Returns the offset after the first {@code '\n'} at or after {@code pos},
+   *  or the size of the file.
+   */
+  private static long nextLine (FileChannel channel, long pos, ByteBuffer buffer) throws IOException
+  {
+    while (true) {
+      buffer.clear();
+      final int n = channel.read (buffer, pos);
+      if (n <= 0) return channel.size();
+      for (int i = 0; i < n; i++) {
+        if (buffer.get (i) == '\n') return pos + i + 1;
+      }
+      pos += n;
+    }
+  }
+
+
+  /** Searches one chunk. */
+  private long scan (Chunk chunk, MatchSink sink)
+  {
+    try (FileChannel channel = FileChannel.open (chunk.file, StandardOpenOption.READ)) {
+      return new FileScanner (re, FileScanner.WINDOW, FileScanner.OVERLAP).scan (channel, chunk.from, chunk.to, 0, sink);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException (e);
+    }
+  }
+
+
+  @SuppressWarnings("serial")  // Tasks are not serialized.
+  private final class Search extends RecursiveTask<List<Match>> {
+    Search (List<Chunk> chunks, int from, int to, Consumer<Match> action)
+    {
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+      this.action = action;
+    }
+
+    @Override
+    protected List<Match> compute()
+    {
+      if (to - from == 1) {
+        final Chunk chunk = chunks.get (from);
+        final List<Match> list = (action == null) ? new ArrayList<>() : Collections.<Match>emptyList();
+        scan (chunk, (start, end, cost) -> {
+          final Match m = new Match (chunk.file, start, end, cost);
+          if (action == null) list.add (m); else action.accept (m);
+          return true;
+        });
+        return list;
+      }
+      if (to == from) return Collections.emptyList();
+
+      final int mid = (from + to) >>> 1;
+      final Search left = new Search (chunks, from, mid, action);
+      left.fork();
+      final List<Match> right = new Search (chunks, mid, to, action).compute();
+      final List<Match> result = left.join();
+      if (action != null) return result;
+
+      final List<Match> all = new ArrayList<> (result.size() + right.size());
+      all.addAll (result);
+      all.addAll (right);
+      return all;
+    }
+
+    private final List<Chunk> chunks;
+    private final int from;
+    private final int to;
+    private final Consumer<Match> action;
+  }
+
+
+  @SuppressWarnings("serial")  // Tasks are not serialized.
+  private final class Count extends RecursiveTask<Long> {
+    Count (List<Chunk> chunks, int from, int to)
+    {
+      this.chunks = chunks;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Long compute()
+    {
+      if (to - from == 1) {
+        return scan (chunks.get (from), (start, end, cost) -> true);
+      }
+      if (to == from) return 0L;
+
+      final int mid = (from + to) >>> 1;
+      final Count left = new Count (chunks, from, mid);
+      left.fork();
+      final long right = new Count (chunks, mid, to).compute();
+      return left.join() + right;
+    }
+
+    private final List<Chunk> chunks;
+    private final int from;
+    private final int to;
+  }
+
+
+  private static final long CHUNK_SIZE = 16 << 20;
+
+  private final NativeRegex re;
+  private final ForkJoinPool pool;
+  private final long chunkSize;
+}
@@ -0,0 +1,252 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static peltomaa.javatre.TRE.*;
+
+
+/** A cache of compiled regular expressions.<p>
+ *
+ * The key is the regular expression, the compilation flags and the
+ * values of the fuzzy matching parameters. If the same key is compiled
+ * many times, all callers get the same {@link RE} object, and the
+ * regular expression is compiled to native memory only once. This is
+ * safe, because a compiled {@link RE} can be used by many threads at
+ * the same time.<p>
+ *
+ * The cache has a maximum number of entries and a maximum size of
+ * (estimated) native memory. When either is exceeded, the least
+ * recently used entries are removed. A removed {@link RE} is not freed
+ * at once, because {@link Matcher}s made from it may still be in use.
+ * Its native memory is freed later, after the garbage collector has
+ * found that nothing uses it any more (see {@link RE#close()}).<p>
+ *
+ * The cache is off by default. When it is set with
+ * {@link #setDefault(PatternCache)}, {@link RE#compile(String,int)},
+ * {@link RE#compile(String,int,TRE.regaparams_t.ByValue)} and the static
+ * {@code RE.wmatch} methods use it. {@link RE#close()} does nothing
+ * for an {@link RE} that came from a cache.<p>
+ *
+ * Example:
+ * <pre>
+ * {@code
+ * PatternCache.setDefault (new PatternCache (10000, 64L << 20));
+ * ...
+ * boolean b = RE.wmatch (regex, REG_EXTENDED, line, 0);  // Compiles regex only once.
+ * }
+ * </pre>
+ */
+public final class PatternCache {
+  /** Constructor.
+   *
+   * @param maxEntries     Maximum number of compiled regular expressions.
+   * @param maxNativeBytes Maximum estimated size of native memory of the
+   *                       compiled regular expressions in bytes.
+   */
+  public PatternCache (int maxEntries, long maxNativeBytes)
+  {
+    if (maxEntries < 1 || maxNativeBytes < 1) {
+      throw new IllegalArgumentException ("Cache size must be positive.");
+    }
+    this.maxEntries = maxEntries;
+    this.maxNativeBytes = maxNativeBytes;
+  }
+
+
+  /** Returns a compiled ordinary regular expression.
+   *
+   * @param regex  Regular expression.
+   * @param cflags Compilation flags.
+   *
+   * @throws RegexSyntaxException if the syntax of regex is incorrect.
+   */
+  public RE get (String regex, int cflags)
+  {
+    return get (new Key (regex, cflags, null));
+  }
+
+
+  /** Returns a compiled approximate (fuzzy) regular expression.
+   *
+   * @param regex  Regular expression.
+   * @param cflags Compilation flags.
+   * @param params Fuzzy regular expression parameters.
+   *
+   * @throws RegexSyntaxException if the syntax of regex is incorrect.
+   */
+  public RE get (String regex, int cflags, regaparams_t params)
+  {
+    return get (new Key (regex, cflags, params));
+  }
+
+
+  private RE get (Key key)
+  {
+    synchronized (this) {
+      RE re = map.get (key);
+      if (re != null) {
+        hits++;
+        return re;
+      }
+      misses++;
+    }
+
+    // Compile outside the lock, compiling may take a while.
+    RE re = key.compile();
+
+    synchronized (this) {
+      RE old = map.get (key);
+      if (old != null) {
+        // Another thread compiled the same key at the same time.
+        re.close();
+        return old;
+      }
+      re.cached = true;
+      map.put (key, re);
+      nativeBytes += re.estimatedNativeSize();
+      evict();
+      return re;
+    }
+  }
+
+
+  private void evict()
+  {
+    Iterator<Map.Entry<Key,RE>> i = map.entrySet().iterator();
+    while ((map.size() > maxEntries || nativeBytes > maxNativeBytes) && map.size() > 1) {
+      RE re = i.next().getValue();
+      i.remove();
+      nativeBytes -= re.estimatedNativeSize();
+      evictions++;
+    }
+  }
+
+
+  /** Removes all entries. */
+  public synchronized void clear()
+  {
+    map.clear();
+    nativeBytes = 0;
+  }
+
+
+  /** Returns the number of compiled regular expressions in the cache. */
+  public synchronized int size() {return map.size();}
+
+  /** Returns the estimated size of native memory of the compiled regular expressions in the cache. */
+  public synchronized long nativeBytes() {return nativeBytes;}
+
+  /** Returns the number of times a compiled regular expression was found in the cache. */
+  public synchronized long hits() {return hits;}
+
+  /** Returns the number of times a regular expression was not in the cache. */
+  public synchronized long misses() {return misses;}
+
+  /** Returns the number of compiled regular expressions removed from the cache
+   *  because it was full.
+   */
+  public synchronized long evictions() {return evictions;}
+
+
+  @Override
+  public synchronized String toString()
+  {
+    return "PatternCache[size=" + map.size() + ", nativeBytes=" + nativeBytes
+         + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+  }
+
+
+  /** Sets the cache that {@link RE#compile(String,int)} and other static methods
+   *  of {@link RE} use. {@code null} turns the cache off.
+   *
+   * @param cache The cache, or {@code null}.
+   */
+  public static void setDefault (PatternCache cache)
+  {
+    defaultCache = cache;
+  }
+
+
+  /** Returns the cache that {@link RE#compile(String,int)} and other static methods
+   *  of {@link RE} use, or {@code null} if there is none.
+   */
+  public static PatternCache getDefault()
+  {
+    return defaultCache;
+  }
+
+
+  private static final class Key {
+    Key (String regex, int cflags, regaparams_t p)
+    {
+      this.regex = regex;
+      this.cflags = cflags;
+      this.params = (p == null) ? null : new int[] {
+        p.cost_ins, p.cost_del, p.cost_subst, p.max_cost,
+        p.max_ins,  p.max_del,  p.max_subst,  p.max_err
+      };
+      this.hash = 31 * (31 * regex.hashCode() + cflags) + Arrays.hashCode (params);
+    }
+
+    RE compile()
+    {
+      if (params == null) {
+        return RE.newRegex (regex, cflags, null);
+      }
+      regaparams_t.ByValue p = new AparamsBuilder()
+        .cost_ins (params[0]).cost_del (params[1]).cost_subst (params[2]).max_cost (params[3])
+        .max_ins (params[4]).max_del (params[5]).max_subst (params[6]).max_err (params[7]).build();
+      return RE.newRegex (regex, cflags, p);
+    }
+
+    @Override
+    public boolean equals (Object o)
+    {
+      if (!(o instanceof Key)) return false;
+      Key k = (Key)o;
+      return hash == k.hash && cflags == k.cflags
+          && regex.equals (k.regex) && Arrays.equals (params, k.params);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    private final String regex;
+    private final int cflags;
+    private final int[] params;  // null for ordinary regex.
+    private final int hash;
+  }
+
+
+  private static volatile PatternCache defaultCache = null;
+
+  private final LinkedHashMap<Key,RE> map = new LinkedHashMap<> (16, 0.75f, true);  // LRU order.
+  private final int maxEntries;
+  private final long maxNativeBytes;
+  private long nativeBytes = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+}
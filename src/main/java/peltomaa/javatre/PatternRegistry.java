@@ -0,0 +1,446 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Regular expressions that are read from a file and compiled at once,
+ *  for example when a service starts.<p>
+ *
+ *  Each line of the file is a pattern with four fields separated by tabs:
+ *  a name, the compilation flags, the fuzzy matching parameters and the
+ *  regular expression. The regular expression is the rest of the line, so
+ *  it may contain tabs. Empty lines and lines that start with {@code #}
+ *  are skipped.
+ *  <ul>
+ *  <li>The flags are names of the {@code REG_} flags of {@link TRE}
+ *      separated by {@code |}, with or without the {@code REG_} prefix,
+ *      or a number, or {@code -} for no flags.
+ *  <li>The parameters are {@code name=value} pairs separated by commas,
+ *      where the names are the methods of {@link AparamsBuilder}, or
+ *      {@code -} for an ordinary regular expression.
+ *  <li>With {@code USEBYTES} the regular expression is compiled as with
+ *      {@link RE#compileBytes(String,int)}.
+ *  </ul>
+ *  For example, with {@code \t} for a tab,
+ *  <pre>
+ *  # name\tflags\tparams\tregex
+ *  error\tEXTENDED|ICASE\t-\t(error|fatal):
+ *  kukko\tLITERAL\tmax_err=1\tkukko
+ *  </pre><p>
+ *
+ *  The patterns are compiled in parallel by the common {@code ForkJoinPool},
+ *  because each compiled regular expression is independent of the others.
+ *  All patterns are compiled even if some of them are incorrect, and the
+ *  errors of all of them are reported with one {@link RegexSyntaxException}
+ *  that has the error of each pattern as a suppressed exception.<p>
+ *
+ *  The id of a pattern is its index in the file, not counting skipped
+ *  lines, so {@link #get(int)} is an array access. {@link #id(String)}
+ *  finds the id of a name; it should be called once, not for each match.<p>
+ *
+ *  In lazy mode, {@link #load(Path,boolean)} returns after reading the
+ *  file, and each pattern is compiled when it is first used. The patterns
+ *  are also compiled in the background, see {@link #warmUp()}.<p>
+ *
+ *  A {@code PatternRegistry} can be used by many threads at the same time.
+ *  {@link RE#close()} does nothing for its regular expressions; they are
+ *  freed by {@link #close()}.
+ */
+public final class PatternRegistry implements AutoCloseable {
+  /** Reads the patterns from {@code file} and compiles them.
+   *  This is equal to {@code load (file, false)}.
+   *
+   * @throws RegexSyntaxException if the syntax of some lines or patterns is incorrect.
+   * @throws IOException if the file cannot be read.
+   */
+  public static PatternRegistry load (Path file) throws IOException
+  {
+    return load (file, false);
+  }
+
+
+  /** Reads the patterns from {@code file}.
+   *
+   * @param file Patterns in UTF-8.
+   * @param lazy If {@code false}, all patterns are compiled before this
+   *             returns. If {@code true}, the patterns are compiled when
+   *             they are first used, and in the background.
+   *
+   * @throws RegexSyntaxException if the syntax of some lines is incorrect,
+   *         or if {@code lazy} is {@code false} and some patterns are incorrect.
+   * @throws IOException if the file cannot be read.
+   */
+  public static PatternRegistry load (Path file, boolean lazy) throws IOException
+  {
+    final List<Entry> entries = new ArrayList<>();
+    final List<RegexSyntaxException> errors = new ArrayList<>();
+    final Map<String,Integer> ids = new HashMap<>();
+    int lineNumber = 0;
+
+    for (String line : Files.readAllLines (file, StandardCharsets.UTF_8)) {
+      lineNumber++;
+      if (line.isEmpty() || line.startsWith ("#")) continue;
+      try {
+        final Entry e = parse (line, lineNumber);
+        if (ids.putIfAbsent (e.name, entries.size()) != null) {
+          throw new IllegalArgumentException ("Duplicate name " + e.name);
+        }
+        entries.add (e);
+      }
+      catch (IllegalArgumentException ex) {
+        errors.add (new RegexSyntaxException (file + ":" + lineNumber + ": " + ex.getMessage()));
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw bulkError (file, errors);
+    }
+
+    final PatternRegistry registry = new PatternRegistry (file, entries, ids);
+    if (lazy) {
+      registry.warmUp = CompletableFuture.runAsync (registry::compileAll);
+    }
+    else {
+      try {
+        registry.compileAll();
+      }
+      catch (RuntimeException ex) {
+        registry.close();
+        throw ex;
+      }
+      registry.warmUp = CompletableFuture.completedFuture (null);
+    }
+    return registry;
+  }
+
+
+  private PatternRegistry (Path file, List<Entry> entries, Map<String,Integer> ids)
+  {
+    this.file = file;
+    this.entries = entries.toArray (new Entry[entries.size()]);
+    this.ids = ids;
+    this.compiled = new AtomicReferenceArray<> (this.entries.length);
+  }
+
+
+  /** Returns the number of patterns. */
+  public int size()
+  {
+    return entries.length;
+  }
+
+
+  /** Returns the id of the pattern called {@code name}, or -1 if there is none. */
+  public int id (String name)
+  {
+    final Integer id = ids.get (name);
+    return (id == null) ? -1 : id;
+  }
+
+
+  /** Returns the name of pattern {@code id}. */
+  public String name (int id)
+  {
+    return entries[id].name;
+  }
+
+
+  /** Returns the regular expression of pattern {@code id} as it is in the file. */
+  public String pattern (int id)
+  {
+    return entries[id].source;
+  }
+
+
+  /** Returns the compiled pattern {@code id}. In lazy mode, it is
+   *  compiled if it has not been compiled yet.
+   *
+   * @throws RegexSyntaxException if the syntax of the pattern is incorrect (only in lazy mode).
+   * @throws IllegalStateException if this registry has been closed.
+   */
+  public RE get (int id)
+  {
+    if (closed) {
+      throw new IllegalStateException ("Pattern registry is closed.");
+    }
+    final Object o = compile (id);
+    if (o instanceof RE) {
+      return (RE)o;
+    }
+    if (o == null) {
+      throw new IllegalStateException ("Pattern registry is closed.");
+    }
+    throw new RegexSyntaxException (((RegexSyntaxException)o).getMessage());
+  }
+
+
+  /** Returns the compiled pattern called {@code name}. This is equal to
+   *  {@code get (id (name))}, but it throws {@code IllegalArgumentException}
+   *  if there is no such pattern.
+   */
+  public RE get (String name)
+  {
+    final int id = id (name);
+    if (id < 0) {
+      throw new IllegalArgumentException ("No pattern " + name + " in " + file);
+    }
+    return get (id);
+  }
+
+
+  /** Returns the compilation of all patterns. It completes when all
+   *  patterns have been compiled, or it completes exceptionally with
+   *  one {@link RegexSyntaxException} for the patterns that are incorrect.
+   *  The correct patterns can be used in either case.<p>
+   *
+   *  In lazy mode the compilation runs in the background, and a service
+   *  can wait for it before it says it is ready, or start at once.
+   *  Otherwise the returned future has already completed.
+   */
+  public CompletableFuture<Void> warmUp()
+  {
+    return warmUp;
+  }
+
+
+  /** Frees the native memory of all compiled patterns, and cancels
+   *  {@link #warmUp()} if it has not completed. The patterns must not
+   *  be used after this.
+   */
+  @Override
+  public void close()
+  {
+    closed = true;
+    if (warmUp != null) warmUp.cancel (false);
+    for (int i = 0; i < entries.length; i++) {
+      final Object o = compiled.getAndSet (i, null);
+      if (o instanceof RE) free ((RE)o);
+    }
+  }
+
+
+  @Override
+  public String toString()
+  {
+    return "PatternRegistry[file=" + file + ", size=" + entries.length + "]";
+  }
+
+
+  /** Compiles all patterns in parallel.
+   *
+   * @throws RegexSyntaxException with the errors of all incorrect patterns.
+   */
+  private void compileAll()
+  {
+    IntStream.range (0, entries.length).parallel().forEach (this::compile);
+
+    final List<RegexSyntaxException> errors = new ArrayList<>();
+    for (int i = 0; i < entries.length; i++) {
+      final Object o = compiled.get (i);
+      if (o instanceof RegexSyntaxException) errors.add ((RegexSyntaxException)o);
+    }
+    if (!errors.isEmpty()) {
+      throw bulkError (file, errors);
+    }
+  }
+
+
+  /** Returns the compiled pattern {@code id}, or its error, and compiles
+   *  it first if needed. Returns {@code null} if this registry is closed.
+   */
+  private Object compile (int id)
+  {
+    Object o = compiled.get (id);
+    if (o != null || closed) {
+      return o;
+    }
+
+    final Entry e = entries[id];
+    try {
+      final RE re = RE.newRegex (e.regex, e.cflags, e.params);
+      re.cached = true;
+      o = re;
+    }
+    catch (RegexSyntaxException ex) {
+      o = new RegexSyntaxException (file + ":" + e.line + ": " + e.name + ": " + ex.getMessage());
+    }
+
+    if (!compiled.compareAndSet (id, null, o)) {
+      // Another thread compiled the same pattern at the same time.
+      if (o instanceof RE) free ((RE)o);
+      o = compiled.get (id);
+    }
+    else if (closed && compiled.compareAndSet (id, o, null)) {
+      // close() was called during the compilation and did not see o.
+      if (o instanceof RE) free ((RE)o);
+      return null;
+    }
+    return o;
+  }
+
+
+  private static void free (RE re)
+  {
+    re.cached = false;
+    re.close();
+  }
+
+
+  private static RegexSyntaxException bulkError (Path file, List<RegexSyntaxException> errors)
+  {
+    final StringBuilder sb = new StringBuilder();
+    sb.append (errors.size()).append (" incorrect patterns in ").append (file).append (':');
+    for (RegexSyntaxException ex : errors) {
+      sb.append ('\n').append (ex.getMessage());
+    }
+    final RegexSyntaxException bulk = new RegexSyntaxException (sb.toString());
+    for (RegexSyntaxException ex : errors) {
+      bulk.addSuppressed (ex);
+    }
+    return bulk;
+  }
+
+
+  /** Parses a line of the file.
+   *
+   * @throws IllegalArgumentException if the syntax of the line is incorrect.
+   */
+  static Entry parse (String line, int lineNumber)
+  {
+    final String[] fields = line.split ("\t", 4);
+    if (fields.length < 4 || fields[0].isEmpty()) {
+      throw new IllegalArgumentException ("Expected name, flags, parameters and regex separated by tabs");
+    }
+    final int cflags = parseFlags (fields[1].trim());
+    final regaparams_t.ByValue params = parseParams (fields[2].trim());
+    final String regex = ((cflags & REG_USEBYTES) != 0) ? RE.byteRegex (fields[3]) : fields[3];
+    return new Entry (fields[0], fields[3], regex, cflags, params, lineNumber);
+  }
+
+
+  /** Parses flags such as {@code EXTENDED|ICASE}. */
+  static int parseFlags (String s)
+  {
+    if (s.equals ("-")) {
+      return 0;
+    }
+    int cflags = 0;
+    for (String flag : s.split ("\\|")) {
+      flag = flag.trim();
+      switch (flag.startsWith ("REG_") ? flag.substring (4) : flag) {
+        case "BASIC":       break;
+        case "EXTENDED":    cflags |= REG_EXTENDED; break;
+        case "ICASE":       cflags |= REG_ICASE; break;
+        case "NEWLINE":     cflags |= REG_NEWLINE; break;
+        case "NOSUB":       cflags |= REG_NOSUB; break;
+        case "LITERAL":     cflags |= REG_LITERAL; break;
+        case "RIGHT_ASSOC": cflags |= REG_RIGHT_ASSOC; break;
+        case "UNGREEDY":    cflags |= REG_UNGREEDY; break;
+        case "USEBYTES":    cflags |= REG_USEBYTES; break;
+        default:
+          try {
+            cflags |= Integer.parseInt (flag);
+          }
+          catch (NumberFormatException ex) {
+            throw new IllegalArgumentException ("Unknown flag " + flag);
+          }
+      }
+    }
+    return cflags;
+  }
+
+
+  /** Parses fuzzy matching parameters such as {@code max_cost=2,max_err=2},
+   *  or returns {@code null} for {@code -}.
+   */
+  static regaparams_t.ByValue parseParams (String s)
+  {
+    if (s.equals ("-")) {
+      return null;
+    }
+    final AparamsBuilder b = new AparamsBuilder();
+    for (String param : s.split (",")) {
+      final int eq = param.indexOf ('=');
+      if (eq < 0) {
+        throw new IllegalArgumentException ("Expected name=value: " + param);
+      }
+      final String name = param.substring (0, eq).trim();
+      final int value;
+      try {
+        value = Integer.parseInt (param.substring (eq + 1).trim());
+      }
+      catch (NumberFormatException ex) {
+        throw new IllegalArgumentException ("Incorrect value of " + name + ": " + param.substring (eq + 1));
+      }
+      switch (name) {
+        case "cost_ins":   b.cost_ins (value); break;
+        case "cost_del":   b.cost_del (value); break;
+        case "cost_subst": b.cost_subst (value); break;
+        case "max_cost":   b.max_cost (value); break;
+        case "max_ins":    b.max_ins (value); break;
+        case "max_del":    b.max_del (value); break;
+        case "max_subst":  b.max_subst (value); break;
+        case "max_err":    b.max_err (value); break;
+        default:
+          throw new IllegalArgumentException ("Unknown parameter " + name);
+      }
+    }
+    return b.build();
+  }
+
+
+  /** A line of the file. */
+  static final class Entry {
+    Entry (String name, String source, String regex, int cflags, regaparams_t.ByValue params, int line)
+    {
+      this.name = name;
+      this.source = source;
+      this.regex = regex;
+      this.cflags = cflags;
+      this.params = params;
+      this.line = line;
+    }
+
+    final String name;
+    final String source;   // The regex as it is in the file.
+    final String regex;    // The regex that is compiled.
+    final int cflags;
+    final regaparams_t.ByValue params;  // null for ordinary regex.
+    final int line;
+  }
+
+
+  private final Path file;
+  private final Entry[] entries;
+  private final Map<String,Integer> ids;
+  private final AtomicReferenceArray<Object> compiled;  // RE or RegexSyntaxException of each pattern, null if not compiled.
+  private volatile boolean closed = false;
+  private volatile CompletableFuture<Void> warmUp;
+}
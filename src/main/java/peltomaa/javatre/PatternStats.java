@@ -0,0 +1,104 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/** Statistics of matching one regular expression (pattern and compilation
+ *  flags), see {@link Metrics#patterns()}. The values are live: they
+ *  grow while the pattern is used.
+ */
+public final class PatternStats {
+  PatternStats (String pattern, int cflags)
+  {
+    this.pattern = pattern;
+    this.cflags = cflags;
+  }
+
+
+  void add (int length, long nanos, int result)
+  {
+    count.increment();
+    totalNanos.add (nanos);
+    maxNanos.accumulate (nanos);
+    inputChars.add (length);
+    latency.add (nanos);
+    if (result == TRE.REG_NOMATCH) {
+      noMatches.increment();
+    }
+    else if (result == TRE.REG_ESPACE) {
+      espace.increment();
+    }
+  }
+
+
+  /** Returns the regular expression. */
+  public String getPattern() {return pattern;}
+
+  /** Returns the compilation flags. */
+  public int getCflags() {return cflags;}
+
+  /** Returns the number of matches (calls of TRE). */
+  public long getCount() {return count.sum();}
+
+  /** Returns the total time of the matches in nanoseconds. */
+  public long getTotalNanos() {return totalNanos.sum();}
+
+  /** Returns the longest time of a match in nanoseconds. */
+  public long getMaxNanos() {return maxNanos.get();}
+
+  /** Returns an upper bound of the median time of a match in nanoseconds. */
+  public long getP50Nanos() {return latency.quantile (0.5);}
+
+  /** Returns an upper bound of the 99th percentile of the time of a match in nanoseconds. */
+  public long getP99Nanos() {return latency.quantile (0.99);}
+
+  /** Returns the counts of matches whose time in nanoseconds is
+   *  {@code 2^i..2^(i+1)-1}, for each {@code i}.
+   */
+  public long[] getLatencyHistogram() {return latency.counts();}
+
+  /** Returns the total length of the matched strings in characters (or bytes). */
+  public long getInputChars() {return inputChars.sum();}
+
+  /** Returns the number of matches that returned {@code REG_NOMATCH}. */
+  public long getNoMatchCount() {return noMatches.sum();}
+
+  /** Returns the number of matches that returned {@code REG_ESPACE}. */
+  public long getEspaceCount() {return espace.sum();}
+
+
+  @Override
+  public String toString()
+  {
+    return "PatternStats[" + pattern + ", cflags=" + cflags + ", count=" + getCount()
+         + ", totalNanos=" + getTotalNanos() + ", p99Nanos=" + getP99Nanos() + "]";
+  }
+
+
+  private final String pattern;
+  private final int cflags;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator (Long::max, 0);
+  private final LongAdder inputChars = new LongAdder();
+  private final LongAdder noMatches = new LongAdder();
+  private final LongAdder espace = new LongAdder();
+  private final Histogram latency = new Histogram();
+}
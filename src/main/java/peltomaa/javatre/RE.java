@@ -18,16 +18,39 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 package peltomaa.javatre;
 
 import com.sun.jna.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import static peltomaa.javatre.TRE.*;
 
 
 /**
- * Regular expression class.
+ * Regular expression class.<p>
+ *
+ * A compiled regular expression can be used by many threads at the same
+ * time. The state of a match is in {@link Matcher}, which must not be
+ * shared between threads.<p>
+ *
+ * A compiled regular expression uses native memory, which is freed by
+ * {@link #close()} (or {@link #regfree()}). If it is not closed, the
+ * memory is freed after the garbage collector has found that the
+ * regular expression is unreachable. {@link NativeResources} tells how
+ * much native memory the compiled regular expressions use.
  */
-public abstract class RE {
-  /** Compiles an ordinary regular expression.
+public abstract class RE implements AutoCloseable {
+  /** Compiles an ordinary regular expression.<p>
+   *
+   * If {@link PatternCache#getDefault()} is not {@code null}, the
+   * compiled regular expression is taken from the cache.
    *
    * @param regex  Regular expression.
    * @param cflags Compilation flags.
@@ -36,7 +59,8 @@ public abstract class RE {
    */
   public static final RE compile (String regex, int cflags)
   {
-    return new Regex (regex, cflags);
+    final PatternCache cache = PatternCache.getDefault();
+    return (cache != null) ? cache.get (regex, cflags) : newRegex (regex, cflags, null);
   }
 
 
@@ -50,11 +74,14 @@ public abstract class RE {
    */
   public static final RE compile (String regex)
   {
-    return new Regex (regex, REG_EXTENDED);
+    return compile (regex, REG_EXTENDED);
   }
 
 
-  /** Compiles an approximate (fuzzy) regular expression.
+  /** Compiles an approximate (fuzzy) regular expression.<p>
+   *
+   * If {@link PatternCache#getDefault()} is not {@code null}, the
+   * compiled regular expression is taken from the cache.
    *
    * @param regex  Regular expression.
    * @param cflags Compilation flags.
@@ -64,7 +91,25 @@ public abstract class RE {
    */
   public static final RE compile (String regex, int cflags, regaparams_t.ByValue params)
   {
-    return new FuzzyRegex (regex, cflags, params);
+    final PatternCache cache = PatternCache.getDefault();
+    return (cache != null) ? cache.get (regex, cflags, params) : newRegex (regex, cflags, params);
+  }
+
+
+  /** Compiles a regular expression without the cache. An exact literal
+   *  pattern, or a fuzzy one with unit costs and {@code REG_NOSUB}, is
+   *  matched in Java by {@link BitParallelRegex}; other patterns are
+   *  compiled by TRE.
+   *
+   * @param params Fuzzy regular expression parameters, or {@code null}
+   *               for an ordinary regular expression.
+   */
+  static RE newRegex (String regex, int cflags, regaparams_t.ByValue params)
+  {
+    if (BitParallelRegex.accepts (regex, cflags, params)) {
+      return new BitParallelRegex (regex, cflags, params);
+    }
+    return (params == null) ? new Regex (regex, cflags) : new FuzzyRegex (regex, cflags, params);
   }
 
 
@@ -79,7 +124,158 @@ public abstract class RE {
    */
   public static final RE compile (String regex, regaparams_t.ByValue params)
   {
-    return new FuzzyRegex (regex, REG_EXTENDED, params);
+    return compile (regex, REG_EXTENDED, params);
+  }
+
+
+  /** Compiles an ordinary regular expression for matching bytes
+   *  (see {@link #matcher(ByteBuffer,int)}).<p>
+   *
+   * The regex is converted to UTF-8, and each byte of it is one character
+   * for TRE. So a literal non-ASCII character in the regex matches its UTF-8
+   * bytes, but it does not work inside a bracket expression, and {@code .}
+   * matches one byte. {@code REG_USEBYTES} is added to {@code cflags}.
+   *
+   * @param regex  Regular expression.
+   * @param cflags Compilation flags.
+   *
+   * @throws RegexSyntaxException if the syntax of regex is incorrect.
+   */
+  public static final RE compileBytes (String regex, int cflags)
+  {
+    return compile (byteRegex (regex), cflags | REG_USEBYTES);
+  }
+
+
+  /** Compiles an approximate (fuzzy) regular expression for matching bytes.
+   *  See {@link #compileBytes(String,int)}.
+   *
+   * @param regex  Regular expression.
+   * @param cflags Compilation flags.
+   * @param params Fuzzy regular expression parameters.
+   *
+   * @throws RegexSyntaxException if the syntax of regex is incorrect.
+   */
+  public static final RE compileBytes (String regex, int cflags, regaparams_t.ByValue params)
+  {
+    return compile (byteRegex (regex), cflags | REG_USEBYTES, params);
+  }
+
+
+  /** Returns a string whose chars are the UTF-8 bytes of {@code regex}. */
+  static String byteRegex (String regex)
+  {
+    return new String (regex.getBytes (StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+  }
+
+
+  /** Returns a matcher that matches the bytes from the position to the limit of
+   *  {@code buffer} to this regular expression. The bytes of a direct buffer
+   *  are not copied.
+   *
+   *  @param buffer Bytes to be matched.
+   *  @param eflags Execution flags.
+   *
+   *  @throws IllegalStateException if this regex was not compiled with
+   *          {@code REG_USEBYTES} (see {@link #compileBytes(String,int)}).
+   */
+  public ByteMatcher matcher (ByteBuffer buffer, int eflags)
+  {
+    return new ByteMatcher (checkBytes(), eflags).reset (buffer, eflags);
+  }
+
+
+  /** Returns a matcher that matches the bytes from the position to the limit of
+   *  {@code buffer} to this regular expression.
+   *  This is equal to {@code matcher(buffer,0)}.
+   *
+   *  @param buffer Bytes to be matched.
+   */
+  public ByteMatcher matcher (ByteBuffer buffer)
+  {
+    return matcher (buffer, 0);
+  }
+
+
+  /** Returns a matcher that matches {@code len} bytes of {@code array}
+   *  starting at {@code off} to this regular expression.
+   *
+   *  @param array  Bytes to be matched.
+   *  @param off    Offset of the first byte.
+   *  @param len    Number of bytes.
+   *  @param eflags Execution flags.
+   *
+   *  @throws IllegalStateException if this regex was not compiled with
+   *          {@code REG_USEBYTES} (see {@link #compileBytes(String,int)}).
+   */
+  public ByteMatcher matcher (byte[] array, int off, int len, int eflags)
+  {
+    return new ByteMatcher (checkBytes(), eflags).reset (array, off, len, eflags);
+  }
+
+
+  /** Returns a matcher that matches {@code len} bytes of {@code array}
+   *  starting at {@code off} to this regular expression.
+   *  This is equal to {@code matcher(array,off,len,0)}.
+   *
+   *  @param array Bytes to be matched.
+   *  @param off   Offset of the first byte.
+   *  @param len   Number of bytes.
+   */
+  public ByteMatcher matcher (byte[] array, int off, int len)
+  {
+    return matcher (array, off, len, 0);
+  }
+
+
+  /** Finds the matches of this regular expression in a file and gives their
+   *  byte offsets to {@code sink}, without reading the file to the Java heap.
+   *  This is equal to {@code scan(file,0,sink)}.
+   *
+   * @param file File to be scanned.
+   * @param sink Receives the matches.
+   *
+   * @return The number of matches.
+   */
+  public long scan (Path file, MatchSink sink) throws IOException
+  {
+    return scan (file, 0, sink);
+  }
+
+
+  /** Finds the matches of this regular expression in a file and gives their
+   *  byte offsets to {@code sink}, without reading the file to the Java heap.<p>
+   *
+   *  The file is mapped to memory in windows of 64 MB, and the windows
+   *  are matched in place. Windows overlap by 1 MB, so a match that is at most
+   *  1 MB long is found even if it crosses a window boundary. A longer match
+   *  may be cut.
+   *
+   * @param file   File to be scanned.
+   * @param eflags Execution flags.
+   * @param sink   Receives the matches.
+   *
+   * @return The number of matches.
+   *
+   * @throws IllegalStateException if this regex was not compiled with
+   *         {@code REG_USEBYTES} (see {@link #compileBytes(String,int)}).
+   */
+  public long scan (Path file, int eflags, MatchSink sink) throws IOException
+  {
+    return new FileScanner (checkBytes(), FileScanner.WINDOW, FileScanner.OVERLAP).scan (file, eflags, sink);
+  }
+
+
+  /** Returns this as a regular expression that can match bytes.
+   *
+   * @throws IllegalStateException if this was not compiled with {@code REG_USEBYTES}.
+   */
+  final NativeRegex checkBytes()
+  {
+    if ((cflags & REG_USEBYTES) == 0) {
+      throw new IllegalStateException ("Regular expression " + string + " was not compiled with REG_USEBYTES.");
+    }
+    return (NativeRegex)this;  // REG_USEBYTES is always matched by TRE.
   }
 
 
@@ -106,10 +302,14 @@ public abstract class RE {
   /** Matches a regular expression by calling some function from the
    *  <a href = "http://laurikari.net/tre/">TRE</a> library.<p>
    *
-   * For fuzzy regex, this methods calls {@code TRE.tre_regawexec},
-   * and for ordinary regex, this method calls {@code TRE.tre_regwexec}.<p>
+   * For fuzzy regex, this methods calls {@code TRE.tre_regawnexec},
+   * and for ordinary regex, this method calls {@code TRE.tre_regwnexec}.<p>
+   *
+   * String matches a regular expression if any part of the string matches.<p>
    *
-   * String matches a regular expression if any part of the string matches.
+   * This method can be called from many threads at the same time.
+   * The offsets of the submatches ({@link #pmatch()}) are stored
+   * separately for each thread.
    *
    * @param string String to be matched.
    * @param eflags Execution flags.
@@ -118,7 +318,15 @@ public abstract class RE {
    *         {@code REG_NOMATCH}, if string does not match,
    *         or an error code, if an error occurs.
    */
-  public abstract int wexec (String string, int eflags);
+  public int wexec (String string, int eflags)
+  {
+    if (!mayMatch (string, 0)) {
+      return REG_NOMATCH;
+    }
+    final MatchData md = matchData.get();
+    md.subject.set (string);
+    return exec (md, 0, eflags);
+  }
 
 
   /** Matches a regular expression.<p>
@@ -135,12 +343,7 @@ public abstract class RE {
    */
   public boolean wmatch (String string, int eflags)
   {
-    final int matchResult = wexec (string, eflags);
-    switch (matchResult) {
-      case 0: return true;
-      case REG_NOMATCH: return false;
-      default: throw new RegexSyntaxException (getMessage (matchResult));
-    }
+    return matchResult (wexec (string, eflags));
   }
 
 
@@ -156,6 +359,276 @@ public abstract class RE {
   }
 
 
+  /** Parses a replacement template once, for replacing the matches
+   *  of this regex many times. See {@link Replacer}.
+   *
+   * @param template Replacement template, where {@code $n} is submatch {@code n}.
+   *
+   * @throws IllegalArgumentException  if {@code $} is not followed by a digit.
+   * @throws IndexOutOfBoundsException if this regex has no such submatch.
+   */
+  public Replacer replacer (String template)
+  {
+    return new Replacer (this, template);
+  }
+
+
+  /** Returns the matches in {@code string} as a stream, as
+   *  {@link Matcher#find()} would find them.<p>
+   *
+   * The matches are found lazily, so {@code findFirst()} or {@code limit(n)}
+   * stop the search. A parallel stream splits the string at newlines if
+   * this regex was compiled with {@code REG_NEWLINE} and cannot match a
+   * newline; otherwise the string is matched by one thread.
+   *
+   * @param string String to be matched.
+   * @param eflags Execution flags.
+   */
+  public Stream<Match> results (CharSequence string, int eflags)
+  {
+    final String s = string.toString();
+    return StreamSupport.stream (new MatchSpliterator (this, s, 0, s.length(), eflags), false);
+  }
+
+
+  /** Returns the matches in {@code string} as a stream.
+   *  This is equal to {@code results(string,0)}.
+   *
+   * @param string String to be matched.
+   */
+  public Stream<Match> results (CharSequence string)
+  {
+    return results (string, 0);
+  }
+
+
+  /** Matches many strings to this regular expression.<p>
+   *
+   * The strings are copied one after another to native memory, and each
+   * string is matched in place. For each string, the result has the
+   * offsets of the match (and the cost of a fuzzy match) in {@code int}
+   * arrays. This is much faster than calling {@link #wmatch(String)} for
+   * many short strings.
+   *
+   * @param strings Strings to be matched.
+   * @param eflags  Execution flags.
+   */
+  public BatchResult matchAll (List<? extends CharSequence> strings, int eflags)
+  {
+    final BatchResult result = new BatchResult (strings.size(), aparams() != null);
+    new BatchMatcher (this, matchData.get()).match (strings, 0, strings.size(), eflags, result);
+    return result;
+  }
+
+
+  /** Matches many strings to this regular expression.
+   *  This is equal to {@code matchAll(strings,0)}.
+   *
+   * @param strings Strings to be matched.
+   */
+  public BatchResult matchAll (List<? extends CharSequence> strings)
+  {
+    return matchAll (strings, 0);
+  }
+
+
+  /** Matches many strings to this regular expression with many threads.
+   *  Each thread matches a part of the strings as in {@link #matchAll(List,int)}.
+   *
+   * @param strings Strings to be matched.
+   * @param eflags  Execution flags.
+   */
+  public BatchResult matchAllParallel (List<? extends CharSequence> strings, int eflags)
+  {
+    final BatchResult result = new BatchResult (strings.size(), aparams() != null);
+    BatchMatcher.matchParallel (this, strings, eflags, result);
+    return result;
+  }
+
+
+  /** Matches many strings to this regular expression, and sets bit {@code i}
+   *  of {@code out} if {@code strings[i]} matches. Other bits are cleared.
+   *
+   * @param strings Strings to be matched.
+   * @param out     Gets the strings that match.
+   *
+   * @return The number of strings that match.
+   */
+  public int matchBatch (String[] strings, BitSet out)
+  {
+    final BatchResult result = matchAll (Arrays.asList (strings), 0);
+    out.clear();
+    for (int i = 0; i < strings.length; i++) {
+      if (result.matched (i)) out.set (i);
+    }
+    return out.cardinality();
+  }
+
+
+  /** Returns the match with the lowest cost, or {@code null} if there
+   *  is no match.<p>
+   *
+   * For a fuzzy regex, the string is first matched exactly; if that
+   * matches, the cost is 0 and the search stops. Otherwise {@code max_cost}
+   * is searched with binary search between 1 and the cost of the match
+   * found with the parameters of the regex. The string is copied to native
+   * memory and the regex is compiled only once; only the parameters of
+   * {@code tre_regawnexec} change. The other limits ({@code max_err} etc.)
+   * of the parameters are used as they are.<p>
+   *
+   * For an ordinary regex, this returns the first match.
+   *
+   * @param string String to be matched.
+   * @param eflags Execution flags.
+   */
+  public Match bestMatch (String string, int eflags)
+  {
+    return bestMatch (matchData.get(), string, eflags);
+  }
+
+
+  /** Returns the match with the lowest cost of {@code string}, or
+   *  {@code null} if there is no match, as {@link #bestMatch(String,int)}
+   *  does. The string is copied to {@code md.subject}, so one {@code md}
+   *  can be used for many strings.
+   *
+   * @param md     Match data of this regular expression.
+   * @param string String to be matched.
+   * @param eflags Execution flags.
+   */
+  Match bestMatch (MatchData md, String string, int eflags)
+  {
+    if (!mayMatch (string, 0)) {
+      return null;
+    }
+    md.subject.set (string);
+
+    final regaparams_t limits = aparams();
+    if (limits == null) {
+      return matchResult (exec (md, 0, eflags)) ? new Match (string, md, false) : null;
+    }
+
+    final regaparams_t.ByValue p = new regaparams_t.ByValue();
+    p.cost_ins   = limits.cost_ins;
+    p.cost_del   = limits.cost_del;
+    p.cost_subst = limits.cost_subst;
+    p.max_ins    = limits.max_ins;
+    p.max_del    = limits.max_del;
+    p.max_subst  = limits.max_subst;
+    p.max_err    = limits.max_err;
+
+    if (approx (md, p, 0, eflags)) {
+      return new Match (string, md, false);  // Exact.
+    }
+    if (!approx (md, p, limits.max_cost, eflags)) {
+      return null;
+    }
+
+    Match best = new Match (string, md, true);
+    int lo = 1;
+    int hi = best.cost();
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (approx (md, p, mid, eflags)) {
+        best = new Match (string, md, true);
+        hi = best.cost();
+      }
+      else {
+        lo = mid + 1;
+      }
+    }
+    return best;
+  }
+
+
+  /** Returns the match with the lowest cost, or {@code null} if there
+   *  is no match. This is equal to {@code bestMatch(string,0)}.
+   *
+   * @param string String to be matched.
+   */
+  public Match bestMatch (String string)
+  {
+    return bestMatch (string, 0);
+  }
+
+
+  /** Matches the string in {@code md.subject} with {@code tre_regawnexec}
+   *  and {@code max_cost} of {@code p} set to {@code maxCost}.
+   */
+  private boolean approx (MatchData md, regaparams_t.ByValue p, int maxCost, int eflags)
+  {
+    p.max_cost = maxCost;
+    p.write();
+    checkOpen();
+    final NativeSubject subject = md.subject;
+    final int matchResult = backend().regawnexec (preg.getPointer(), subject.pointer (0), subject.length(), md.amatch(), p, eflags);
+    checkOpen();  // Keeps this reachable, see exec(MatchData,int,int,int).
+    if (matchResult == 0) {
+      md.read (0);
+    }
+    else {
+      md.clear();
+    }
+    return matchResult (matchResult);
+  }
+
+
+  /** Matches a regular expression to the string in {@code md.subject},
+   *  starting from {@code offset}. If the string matches, reads
+   *  the results to {@code md}.
+   *
+   * @param md     Match data.
+   * @param offset Wide offset of the first character to be matched.
+   * @param eflags Execution flags.
+   */
+  final int exec (MatchData md, int offset, int eflags)
+  {
+    return exec (md, offset, md.subject.length(), eflags);
+  }
+
+
+  /** Matches a regular expression to the characters from {@code offset}
+   *  to {@code end} of the string in {@code md.subject}. If they match,
+   *  reads the results to {@code md}.
+   *
+   * @param md     Match data.
+   * @param offset Wide offset of the first character to be matched.
+   * @param end    Wide offset of the first character after the characters to be matched.
+   * @param eflags Execution flags.
+   */
+  abstract int exec (MatchData md, int offset, int end, int eflags);
+
+
+  /** Returns new match data for this regular expression. */
+  MatchData newMatchData()
+  {
+    return new MatchData (nmatch(), aparams() != null);
+  }
+
+
+  /** Returns new match data for this regular expression that matches
+   *  the string in {@code subject}.
+   */
+  MatchData newMatchData (NativeSubject subject)
+  {
+    return new MatchData (nmatch(), aparams() != null, subject);
+  }
+
+
+  /** Converts the return value of {@code wexec} or {@code wnexec} to boolean.
+   *
+   * @throws RegexSyntaxException if {@code matchResult} is an error code.
+   */
+  final boolean matchResult (int matchResult)
+  {
+    switch (matchResult) {
+      case 0: return true;
+      case REG_NOMATCH: return false;
+      default: throw new RegexSyntaxException (getMessage (matchResult));
+    }
+  }
+
+
   /** Compiles an ordinary {@code regex} and returns {@code true} if {@code string} matches it.<p>
    *
    * This code is equal to
@@ -167,6 +640,9 @@ public abstract class RE {
    * }
    * </pre>
    *
+   * except that the compiled regex is freed, unless it is from
+   * {@link PatternCache#getDefault()}.
+   *
    * @param regex  Regular expression.
    * @param cflags Compilation flags.
    * @param string String to be matched.
@@ -177,7 +653,12 @@ public abstract class RE {
   public static final boolean wmatch (String regex, int cflags, String string, int eflags)
   {
     RE re = RE.compile (regex, cflags);
-    return re.wmatch (string, eflags);
+    try {
+      return re.wmatch (string, eflags);
+    }
+    finally {
+      re.regfree();  // Does nothing if re is in a PatternCache.
+    }
   }
 
 
@@ -192,6 +673,9 @@ public abstract class RE {
    * }
    * </pre>
    *
+   * except that the compiled regex is freed, unless it is from
+   * {@link PatternCache#getDefault()}.
+   *
    * @param regex  Regular expression.
    * @param cflags Compilation flags.
    * @param params Fuzzy regular expression parameters.
@@ -203,7 +687,12 @@ public abstract class RE {
   public static final boolean wmatch (String regex, int cflags, regaparams_t.ByValue params, String string, int eflags)
   {
     RE re = RE.compile (regex, cflags, params);
-    return re.wmatch (string, eflags);
+    try {
+      return re.wmatch (string, eflags);
+    }
+    finally {
+      re.regfree();  // Does nothing if re is in a PatternCache.
+    }
   }
 
 
@@ -217,11 +706,16 @@ public abstract class RE {
 
 
   /** Returns an array of <a href="TRE.regmatch_t.html">regmatch_t</a> objects
-   *  that contain offsets of the submatches of regular expression.
+   *  that contain offsets of the submatches of regular expression
+   *  after the last call of {@link #wexec(String,int)} or
+   *  {@link #wmatch(String,int)} in the calling thread.
    *
    * @see <a href="TRE.regmatch_t.html">regmatch_t</a>
    */
-  public abstract regmatch_t[] pmatch();
+  public regmatch_t[] pmatch()
+  {
+    return matchData.get().toPmatch();
+  }
 
 
   /** Returns the approximate matching parameter struct
@@ -234,27 +728,37 @@ public abstract class RE {
   }
 
 
-  /** Returns the start offset of the {@code n}th submatch within the string.
-   *  Returns -1 if {@code n}th submatch does not exist.
-   *
-   * @param n Index of the submatch.
-   */
-  protected abstract int start (int n);
+  /** Returns the size of the submatch array. */
+  protected abstract int nmatch();
 
 
-  /** Returns the offset of the first character after {@code n}th submatch within the string.
-   *  Returns -1 if {@code n}th submatch does not exist.
-   *
-   * @param n Index of the submatch.
+  /** Returns the name of the engine that matches this regex:
+   *  the name of the TRE backend, or {@code java}.
    */
-  protected abstract int end (int n);
+  String engine()
+  {
+    return backend().name();
+  }
 
 
-  protected abstract void setOffsets (int offset);
+  /** Returns the prefilter that rejects strings that cannot match without
+   *  calling TRE, or {@code null} if this regular expression has no
+   *  required literals. See {@link LiteralPrefilter}.
+   */
+  public LiteralPrefilter prefilter()
+  {
+    return null;
+  }
 
 
-  /** Returns the size of the submatch array. */
-  protected abstract int nmatch();
+  /** Returns {@code false} if no match can start at or after {@code from}
+   *  in {@code s}.
+   */
+  final boolean mayMatch (CharSequence s, int from)
+  {
+    final LiteralPrefilter p = prefilter();
+    return (p == null) || p.mayMatch (s, from);
+  }
 
 
   /** Calculates the size of array that contains match addressing information.
@@ -275,7 +779,62 @@ public abstract class RE {
   }
 
 
-  public void regfree() {getLib().tre_regfree (preg);}
+  /** Frees the native memory of the compiled regular expression.
+   *  This is equal to {@link #close()}.
+   */
+  public void regfree()
+  {
+    close();
+  }
+
+
+  /** Frees the native memory of the compiled regular expression.
+   *  After that, matching throws {@code IllegalStateException}.<p>
+   *
+   *  Calling this more than once, or from many threads, is safe:
+   *  the memory is freed only once. This must not be called while another
+   *  thread is matching with this regular expression.<p>
+   *
+   *  Does nothing if this regular expression is from a {@link PatternCache},
+   *  because then it may be used elsewhere. It is freed after it has been
+   *  removed from the cache and is unreachable.
+   */
+  @Override
+  public void close()
+  {
+    if (!cached) {
+      closed = true;
+      if (cleanable != null) cleanable.clean();
+    }
+  }
+
+
+  /** Returns {@code true} if this regular expression has been closed. */
+  public boolean isClosed()
+  {
+    return closed;
+  }
+
+
+  final void checkOpen()
+  {
+    if (closed) {
+      throw new IllegalStateException ("Regular expression " + string + " is closed.");
+    }
+  }
+
+
+  /** Returns an estimate of the native memory of the compiled regular
+   *  expression in bytes. TRE does not tell the real size, but its
+   *  automaton grows about linearly with the length of the regex. The
+   *  constants are a guess, not measured, so the result is only good for
+   *  comparing regexes and for seeing whether the memory grows.
+   */
+  long estimatedNativeSize()
+  {
+    if (preg == null) return 0;
+    return preg.size() + 512 + 128L * string.length();
+  }
 
 /*
   @Override
@@ -297,10 +856,7 @@ public abstract class RE {
 
   private final String getMessage (int errcode)
   {
-     byte[] errbuf = new byte[1000];
-     NativeLong errbuf_size = new NativeLong (errbuf.length);
-     getLib().tre_regerror (errcode, preg, errbuf, errbuf_size);
-     return Native.toString (errbuf);
+     return backend().regerror (errcode, preg.getPointer());
   }
 
 
@@ -311,7 +867,11 @@ public abstract class RE {
    *
    * @param string String to split.
    * @param eflags Execution flags.
+   *
+   * @deprecated The text after the last match is dropped. Use
+   *             {@link #split(CharSequence,int,int)} instead.
    */
+  @Deprecated
   public String[] split (String string, int eflags)
   {
     List<String> list = new ArrayList();
@@ -328,6 +888,75 @@ public abstract class RE {
   }
 
 
+  /** Splits a string around matches of this regex, as
+   *  {@code java.util.regex.Pattern.split(CharSequence,int)} does.<p>
+   *
+   * If {@code limit} is positive, there are at most {@code limit} pieces,
+   * the last one being the rest of the input, and no more matches are
+   * searched. If {@code limit} is zero, trailing empty pieces are dropped.
+   * If {@code limit} is negative, all pieces are returned. An empty match
+   * at the start of the input does not make an empty first piece.
+   *
+   * @param input  String to split.
+   * @param limit  Maximum number of pieces, or 0 or negative, see above.
+   * @param eflags Execution flags.
+   */
+  public String[] split (CharSequence input, int limit, int eflags)
+  {
+    final String s = input.toString();
+    final Matcher m = matcher (s, eflags);
+    final List<String> list = new ArrayList<>();
+    int index = 0;
+
+    while ((limit <= 0 || list.size() < limit - 1) && m.find()) {
+      if (m.end() == 0) {
+        continue;  // Empty match at the start.
+      }
+      list.add (s.substring (index, m.start()));
+      index = m.end();
+    }
+    if (index == 0) {
+      return new String[] {s};
+    }
+    list.add (s.substring (index));
+
+    int size = list.size();
+    if (limit == 0) {
+      while (size > 0 && list.get (size - 1).isEmpty()) size--;
+    }
+    return list.subList (0, size).toArray (new String[0]);
+  }
+
+
+  /** Splits a string around matches of this regex lazily, as
+   *  {@code java.util.regex.Pattern.splitAsStream} does. The pieces are
+   *  {@code input.subSequence} views, and the matches are searched only
+   *  as far as the stream needs pieces.
+   *
+   * @param input  String to split.
+   * @param eflags Execution flags.
+   */
+  public Stream<CharSequence> splitAsStream (CharSequence input, int eflags)
+  {
+    if (input.length() == 0) {
+      return Stream.of (input);
+    }
+    final SplitIterator i = new SplitIterator (this, input, eflags);
+    return StreamSupport.stream (Spliterators.spliteratorUnknownSize (i, Spliterator.ORDERED | Spliterator.NONNULL), false);
+  }
+
+
+  /** Splits a string around matches of this regex lazily.
+   *  This is equal to {@code splitAsStream(input,0)}.
+   *
+   * @param input String to split.
+   */
+  public Stream<CharSequence> splitAsStream (CharSequence input)
+  {
+    return splitAsStream (input, 0);
+  }
+
+
 
   /** Constructor.
    *
@@ -338,25 +967,96 @@ public abstract class RE {
    *         {@code TRE.tre_regwcomp(regex_t preg, WString regex, int cflags)} returns an error code).
    */
   protected RE (String regex, int cflags)
+  {
+    this (regex, cflags, true);
+  }
+
+
+  /** Constructor.
+   *
+   * @param regex   Regular expression.
+   * @param cflags  Compilation flags.
+   * @param compile {@code false} if the subclass matches in Java and TRE
+   *                does not compile the regular expression.
+   */
+  RE (String regex, int cflags, boolean compile)
   {
     this.cflags = cflags;
     this.string = regex;
+    if (!compile) {
+      this.preg = null;
+      return;
+    }
     this.preg = new regex_t();
-    this.regex = new WString (regex);
-    int errcode = getLib().tre_regwcomp (preg, this.regex, cflags);
+    final boolean timed = Metrics.enabled;
+    final long t0 = timed ? System.nanoTime() : 0;
+    final Object event = Jfr.beginCompile();
+    int errcode = backend().regwcomp (preg.getPointer(), regex, cflags);
+    if (timed) {
+      Metrics.compiled (regex, cflags, System.nanoTime() - t0, errcode);
+    }
+    if (event != null) {
+      Jfr.endCompile (event, regex, cflags, errcode);
+    }
 //System.out.println ("errcode = " + errcode);
     if (errcode != 0) {
       throw new RegexSyntaxException (getMessage (errcode));
     }
+    preg.read();
+
+    final long bytes = estimatedNativeSize();
+    NativeResources.regexAllocated (bytes);
+    cleanable = NativeCleaner.register (this, new Free (preg, bytes));
+  }
+
+
+  /** Frees a compiled regex. This must not refer to the {@code RE},
+   *  so that the {@code RE} can become unreachable.
+   */
+  private static final class Free implements Runnable {
+    Free (regex_t preg, long bytes)
+    {
+      this.preg = preg;
+      this.bytes = bytes;
+    }
+
+    @Override
+    public void run()
+    {
+      backend().regfree (preg.getPointer());
+      NativeResources.regexFreed (bytes);
+    }
+
+    private final regex_t preg;  // Keeps the memory of regex_t alive until it is freed.
+    private final long bytes;
   }
 
 
   private static Library library = null;
+  private static NativeLibrary nativeLibrary = null;
   private int cflags;
   private String string;
-  private WString regex;
   protected regex_t preg;
 
+  /** {@code true} if this is in a {@link PatternCache}. */
+  boolean cached = false;
+
+  private volatile boolean closed = false;
+  private NativeCleaner.Cleanable cleanable;
+
+  /** Statistics of this regex, see {@link Metrics}. */
+  PatternStats stats;
+  int statsGeneration;
+
+  /** Match data for {@link #wexec(String,int)}, one for each thread.
+   *  There is one for each regex and thread, so its buffer is shrunk
+   *  after a long string (see {@link #RETAINED_CAPACITY}).
+   */
+  final ThreadLocal<MatchData> matchData = ThreadLocal.withInitial (() -> newMatchData (new NativeSubject (RETAINED_CAPACITY)));
+
+  /** Number of characters that the buffer of {@link #matchData} keeps. */
+  static final int RETAINED_CAPACITY = 1 << 14;
+
 
   // This code is modified from org.puimula.libvoikko.Voikko
   // See http://voikko.puimula.org/java.html
@@ -383,17 +1083,51 @@ public abstract class RE {
   public synchronized static TRE getLib()
   {
     if (library == null) {
+      library = (TRE) Native.loadLibrary (getNativeLibrary().getFile().getPath(), TRE.class);
+    }
+    return (TRE)library;
+  }
+
+
+  /** Returns the functions that {@code RE} and its subclasses call.
+   *  They are called through JNA direct mapping.
+   */
+  static TreBackend backend()
+  {
+    return BackendHolder.BACKEND;
+  }
+
+
+  private static final class BackendHolder {
+    static final TreBackend BACKEND = new JnaBackend();
+  }
+
+
+  /** Loads the native library. This is used by {@link #getLib()} and by
+   *  the direct mapped functions in {@link DirectTRE}.
+   */
+  synchronized static NativeLibrary getNativeLibrary()
+  {
+    if (nativeLibrary == null) {
+      final Object event = Jfr.beginLibraryLoad();
       NativeLibrary.addSearchPath ("tre", "/usr/local/lib");
+      int attempts = 0;
       for (String libName : LIBRARY_NAMES) {
-        NativeLibrary nativeLibrary = tryLoadLibrary (libName);
+        attempts++;
+        nativeLibrary = tryLoadLibrary (libName);
         if (nativeLibrary != null) {
-          library = (TRE) Native.loadLibrary (nativeLibrary.getFile().getPath(), TRE.class);
-          return (TRE)library;
+          if (event != null) {
+            Jfr.endLibraryLoad (event, libName, nativeLibrary.getFile().getPath(), attempts);
+          }
+          return nativeLibrary;
         }
       }
+      if (event != null) {
+        Jfr.endLibraryLoad (event, "", "", attempts);
+      }
       throw new UnsatisfiedLinkError ("Could not load the native component of javatre.");
     }
-    return (TRE)library;
+    return nativeLibrary;
   }
 
 
@@ -21,9 +21,9 @@ import com.sun.jna.*;
 import static peltomaa.javatre.TRE.*;
 
 
-/** Ordinary (non-fuzzy) regular expression matching using {@code tre_regwexec}.
+/** Ordinary (non-fuzzy) regular expression matching using {@code tre_regwnexec}.
  */
-class Regex extends RE {
+class Regex extends NativeRegex {
   /** Constructs an ordinary regular expression.
    *
    * @param regex  Regular expression.
@@ -32,8 +32,8 @@ class Regex extends RE {
   protected Regex (String regex, int cflags)
   {
     super (regex, cflags);
-    nmatch = nm (regex);
-    pmatch = new regmatch_t[nmatch.intValue()];
+    nmatch = nm (regex).intValue();
+    prefilter = LiteralPrefilter.of (regex, cflags, null);
   }
 
 
@@ -44,62 +44,38 @@ class Regex extends RE {
   }
 
 
-  /** Matches a regular expression by calling {@link TRE#tre_regwexec}.
-   *
-   * @param string String to be matched.
-   * @param eflags Execution flags.
-   *
-   * @return 0, if string matches regular expression,
-   *         {@code REG_NOMATCH}, if string does not match.
+  /** Matches a regular expression by calling {@code tre_regwnexec}.
    */
   @Override
-  public int wexec (String string, int eflags)
-  {
-    return getLib().tre_regwexec (preg, new WString(string), nmatch, pmatch, eflags);
-  }
-
-
-  @Override
-  public regmatch_t[] pmatch()
+  int exec (MatchData md, Pointer string, int len, int eflags)
   {
-    return pmatch;
-  }
-
-
-  @Override
-  protected int start (int n)
-  {
-    return pmatch[n].rm_so;
+    return backend().regwnexec (preg.getPointer(), string, len, nmatch, md.pmatch(), eflags);
   }
 
 
+  /** Matches a regular expression to bytes by calling {@code tre_regnexec}.
+   */
   @Override
-  protected int end (int n)
+  int nexec (MatchData md, Pointer string, int len, int eflags)
   {
-    return pmatch[n].rm_eo;
+    return backend().regnexec (preg.getPointer(), string, len, nmatch, md.pmatch(), eflags);
   }
 
 
   @Override
-  protected void setOffsets (int offset)
+  public LiteralPrefilter prefilter()
   {
-    for (int i = 0; i < nmatch.intValue(); i++) {
-//      System.out.println ("F " + start(i) + " " + end(i) + " " + offset + " " + string.substring(offset) + " " + pmatch[i].rm_so + " " + pmatch[i].rm_eo + " " + group(i));
-      if (pmatch[i].rm_so >= 0) {
-        pmatch[i].rm_so += offset;
-        pmatch[i].rm_eo += offset;
-      }
-    }
+    return prefilter;
   }
 
 
   @Override
   protected int nmatch()
   {
-    return nmatch.intValue();
+    return nmatch;
   }
 
 
-  private NativeLong nmatch;
-  private regmatch_t[] pmatch;
+  private final int nmatch;
+  private final LiteralPrefilter prefilter;
 }
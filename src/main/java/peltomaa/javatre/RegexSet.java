@@ -0,0 +1,335 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import static peltomaa.javatre.TRE.*;
+
+
+/** Matches a string to many regular expressions at once, and tells which
+ *  of them match.<p>
+ *
+ *  The patterns are combined to alternations {@code (p1)|(p2)|...}, so that
+ *  one call of {@code tre_regwnexec} tells if any of them matches, and the
+ *  submatch of each alternative tells which pattern it was. The
+ *  alternations form a tree: the patterns are split to chunks of at most
+ *  {@link #CHUNK} patterns (so that the automaton of one regex does not get
+ *  too large), each chunk is split to {@link #FANOUT} smaller alternations,
+ *  and so on down to single patterns. A subtree is matched only if
+ *  its alternation matched, so a string that matches few patterns
+ *  is matched with a handful of native calls.<p>
+ *
+ *  The patterns must be extended regular expressions ({@code REG_EXTENDED})
+ *  without back references, because the groups are renumbered when the
+ *  patterns are combined. The id of a pattern is its index in the list.<p>
+ *
+ *  A {@code RegexSet} can be used by many threads at the same time.
+ *  {@link #close()} frees its compiled regular expressions.
+ *
+ *  Example:
+ *  <pre>
+ *  {@code
+ *  RegexSet set = new RegexSet (Arrays.asList ("ERROR", "time ?out", "disk (full|failure)"), REG_EXTENDED);
+ *  BitSet ids = set.match ("ERROR: disk full");   // {0, 2}
+ *  }
+ *  </pre>
+ */
+public final class RegexSet implements AutoCloseable {
+  /** Maximum number of patterns in one top level alternation. */
+  public static final int CHUNK = 256;
+
+  /** Number of subtrees of an alternation. */
+  public static final int FANOUT = 8;
+
+
+  /** Constructs a set of ordinary regular expressions.
+   *
+   * @param patterns Regular expressions.
+   * @param cflags   Compilation flags, must include {@code REG_EXTENDED}.
+   *
+   * @throws RegexSyntaxException if the syntax of a pattern is incorrect.
+   */
+  public RegexSet (List<String> patterns, int cflags)
+  {
+    this (patterns, cflags, null);
+  }
+
+
+  /** Constructs a set of approximate (fuzzy) regular expressions.
+   *  All patterns use the same parameters.
+   *
+   * @param patterns Regular expressions.
+   * @param cflags   Compilation flags, must include {@code REG_EXTENDED}.
+   * @param params   Fuzzy regular expression parameters, or {@code null}.
+   *
+   * @throws RegexSyntaxException if the syntax of a pattern is incorrect.
+   */
+  public RegexSet (List<String> patterns, int cflags, regaparams_t.ByValue params)
+  {
+    if ((cflags & REG_EXTENDED) == 0 || (cflags & REG_LITERAL) != 0) {
+      throw new IllegalArgumentException ("RegexSet needs REG_EXTENDED and not REG_LITERAL.");
+    }
+    this.patterns = new ArrayList<> (patterns);
+    this.cflags = cflags & ~REG_NOSUB;  // The submatches tell which pattern matched.
+    this.params = params;
+
+    final List<Node> roots = new ArrayList<>();
+    for (int from = 0; from < patterns.size(); from += CHUNK) {
+      roots.add (build (from, Math.min (from + CHUNK, patterns.size())));
+    }
+    this.roots = roots.toArray (new Node[0]);
+    this.nodeCount = nextIndex;
+    final Node[] r = this.roots;
+    final int count = this.nodeCount;
+    this.state = ThreadLocal.withInitial (() -> new State (r, count));
+  }
+
+
+  /** Returns the number of patterns. */
+  public int size()
+  {
+    return patterns.size();
+  }
+
+
+  /** Returns the pattern whose id is {@code id}. */
+  public String pattern (int id)
+  {
+    return patterns.get (id);
+  }
+
+
+  /** Returns the ids of the patterns that match {@code string}.
+   *
+   * @param string String to be matched.
+   */
+  public BitSet match (CharSequence string)
+  {
+    BitSet ids = new BitSet (patterns.size());
+    match (string, 0, ids);
+    return ids;
+  }
+
+
+  /** Sets the bits of the ids of the patterns that match {@code string}
+   *  to {@code ids}. Other bits are cleared.
+   *
+   * @param string String to be matched.
+   * @param eflags Execution flags.
+   * @param ids    Gets the ids.
+   *
+   * @return {@code true} if any pattern matches.
+   */
+  public boolean match (CharSequence string, int eflags, BitSet ids)
+  {
+    ids.clear();
+    final State state = this.state.get();
+    state.subject.set (string);
+    for (Node root : roots) {
+      match (root, state, eflags, ids);
+    }
+    return !ids.isEmpty();
+  }
+
+
+  /** Returns {@code true} if any pattern matches {@code string}.
+   *
+   * @param string String to be matched.
+   */
+  public boolean matchesAny (CharSequence string)
+  {
+    final State state = this.state.get();
+    state.subject.set (string);
+    for (Node root : roots) {
+      if (exec (root, state, 0)) return true;
+    }
+    return false;
+  }
+
+
+  /** Frees the native memory of the compiled regular expressions.
+   *  This set must not be used after this. The match data of the
+   *  threads that used this set is freed when it is unreachable.
+   */
+  @Override
+  public void close()
+  {
+    close (roots);
+    state.remove();
+  }
+
+
+  private static void close (Node[] nodes)
+  {
+    if (nodes == null) return;
+    for (Node node : nodes) {
+      node.re.close();
+      close (node.children);
+    }
+  }
+
+
+  private void match (Node node, State state, int eflags, BitSet ids)
+  {
+    if (ids.get (node.from) && node.isLeaf()) return;  // Known from the parent.
+    if (!exec (node, state, eflags)) return;
+    if (node.isLeaf()) {
+      ids.set (node.from);
+      return;
+    }
+
+    // The alternative that matched is a hit; the others must be checked.
+    final MatchData md = state.md[node.index];
+    for (int k = 0; k < node.groups.length; k++) {
+      if (md.startOffset (node.groups[k]) >= 0) {
+        ids.set (node.from + k);
+        break;
+      }
+    }
+    for (Node child : node.children) {
+      match (child, state, eflags, ids);
+    }
+  }
+
+
+  private boolean exec (Node node, State state, int eflags)
+  {
+    return node.re.matchResult (node.re.exec (state.md[node.index], 0, eflags));
+  }
+
+
+  /** Builds the tree of patterns {@code from..to}. */
+  private Node build (int from, int to)
+  {
+    if (to - from == 1) {
+      try {
+        return new Node (compile (patterns.get (from)), from, null, null, nextIndex++);
+      }
+      catch (RegexSyntaxException e) {
+        throw new RegexSyntaxException ("Pattern " + from + " (" + patterns.get (from) + "): " + e.getMessage());
+      }
+    }
+
+    // Children first, so that syntax errors are found in single patterns.
+    final int n = Math.min (FANOUT, to - from);
+    final Node[] children = new Node[n];
+    for (int i = 0; i < n; i++) {
+      children[i] = build (from + (to - from) * i / n, from + (to - from) * (i + 1) / n);
+    }
+
+    final StringBuilder sb = new StringBuilder();
+    final int[] groups = new int[to - from];
+    int group = 1;
+    for (int i = from; i < to; i++) {
+      if (i > from) sb.append ('|');
+      sb.append ('(').append (patterns.get (i)).append (')');
+      groups[i - from] = group;
+      group += 1 + groupCount (patterns.get (i));
+    }
+    return new Node (compile (sb.toString()), from, groups, children, nextIndex++);
+  }
+
+
+  private RE compile (String regex)
+  {
+    return (params == null) ? new Regex (regex, cflags) : new FuzzyRegex (regex, cflags, params);
+  }
+
+
+  /** Returns the number of capturing groups in an extended regular expression. */
+  static int groupCount (String regex)
+  {
+    int n = 0;
+    final int length = regex.length();
+    for (int i = 0; i < length; i++) {
+      final char c = regex.charAt (i);
+      if (c == '\\') {
+        i++;
+      }
+      else if (c == '[') {
+        i = LiteralPrefilter.skipBracket (regex, i) - 1;
+      }
+      else if (c == '(' && (i + 1 >= length || regex.charAt (i + 1) != '?')) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+
+  /** An alternation of patterns {@code from..from+groups.length}, or one pattern. */
+  private static final class Node {
+    Node (RE re, int from, int[] groups, Node[] children, int index)
+    {
+      this.re = re;
+      this.from = from;
+      this.groups = groups;
+      this.children = children;
+      this.index = index;
+    }
+
+    boolean isLeaf()
+    {
+      return children == null;
+    }
+
+    final RE re;
+    final int from;          // Id of the first pattern.
+    final int[] groups;      // Group of each pattern in re, null for a leaf.
+    final Node[] children;   // null for a leaf.
+    final int index;         // Index of the match data in State.
+  }
+
+
+  /** Match data of one thread: one string and match data for each node.<p>
+   *
+   *  This is static, so that the value of the thread local does not refer
+   *  to the set, which refers to the thread local. Otherwise the set could
+   *  not be collected while the thread lives.
+   */
+  private static final class State {
+    State (Node[] roots, int nodeCount)
+    {
+      md = new MatchData[nodeCount];
+      fill (roots);
+    }
+
+    private void fill (Node[] nodes)
+    {
+      if (nodes == null) return;
+      for (Node node : nodes) {
+        md[node.index] = node.re.newMatchData (subject);
+        fill (node.children);
+      }
+    }
+
+    final NativeSubject subject = new NativeSubject();
+    final MatchData[] md;
+  }
+
+
+  private final List<String> patterns;
+  private final int cflags;
+  private final regaparams_t.ByValue params;
+  private final Node[] roots;
+  private final int nodeCount;
+  private int nextIndex = 0;  // Index of the next node, used in the constructor.
+  private final ThreadLocal<State> state;
+}
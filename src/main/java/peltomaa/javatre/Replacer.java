@@ -0,0 +1,253 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.regex.MatchResult;
+
+
+/** A replacement template that has been parsed once, see {@link RE#replacer(String)}.<p>
+ *
+ *  In the template, {@code $n} is replaced with submatch {@code n}, and
+ *  {@code \$} is a {@code $}. As in {@code java.util.regex}, the number
+ *  has as many digits as make a valid submatch number. A submatch that
+ *  did not match is replaced with nothing. Other characters, also other
+ *  backslashes, are copied as they are.<p>
+ *
+ *  The template is a list of operations: copy a part of the literal text,
+ *  or copy a submatch. Replacing copies parts of the input with
+ *  {@code Appendable.append(CharSequence,int,int)} without making substrings.
+ *  A {@code Replacer} does not change, so many threads can use it at the
+ *  same time.
+ */
+public final class Replacer {
+  /** Parses {@code template}.
+   *
+   * @param re       Regular expression whose matches are replaced.
+   * @param template Replacement template.
+   *
+   * @throws IllegalArgumentException  if {@code $} is not followed by a digit.
+   * @throws IndexOutOfBoundsException if the regex has no such submatch.
+   */
+  Replacer (RE re, String template)
+  {
+    this.re = re;
+    this.template = template;
+
+    final int groupCount = re.nmatch() - 1;
+    final StringBuilder text = new StringBuilder();
+    int[] ops = new int[8];
+    int n = 0;
+    int literalStart = 0;
+
+    for (int i = 0; i < template.length(); i++) {
+      final char c = template.charAt (i);
+      if (c == '\\' && i + 1 < template.length() && template.charAt (i + 1) == '$') {
+        text.append ('$');
+        i++;
+        continue;
+      }
+      if (c != '$') {
+        text.append (c);
+        continue;
+      }
+      if (i + 1 == template.length()) {
+        throw new IllegalArgumentException ("Unquoted '$' can not be the last character in replacement string.");
+      }
+      if (!isLatin1Digit (template.charAt (i + 1))) {
+        throw new IllegalArgumentException ("Not a group number.");
+      }
+      int group = template.charAt (++i) - '0';
+      if (group > groupCount) {
+        throw new IndexOutOfBoundsException ("No group number " + group + ".");
+      }
+      while (i + 1 < template.length() && isLatin1Digit (template.charAt (i + 1))) {
+        final int g = 10 * group + template.charAt (i + 1) - '0';
+        if (g > groupCount) break;
+        group = g;
+        i++;
+      }
+
+      // Literal text before the submatch, then the submatch.
+      if (n + 2 > ops.length) ops = Arrays.copyOf (ops, 2 * ops.length);
+      if (text.length() > literalStart) {
+        ops[n++] = LITERAL - literalStart;
+        ops[n++] = text.length();
+        literalStart = text.length();
+      }
+      ops[n++] = group;
+      ops[n++] = 0;
+    }
+    if (text.length() > literalStart) {
+      if (n + 2 > ops.length) ops = Arrays.copyOf (ops, n + 2);
+      ops[n++] = LITERAL - literalStart;
+      ops[n++] = text.length();
+    }
+    this.text = text.toString();
+    this.ops = Arrays.copyOf (ops, n);
+  }
+
+
+  /** Returns the template. */
+  public String template()
+  {
+    return template;
+  }
+
+
+  /** Returns the regular expression whose matches are replaced. */
+  public RE regex()
+  {
+    return re;
+  }
+
+
+  /** Replaces all matches of the regex in {@code input} with this template.
+   *
+   * @param input String to be matched.
+   */
+  public String replaceAll (CharSequence input)
+  {
+    return replaceAll (input, 0);
+  }
+
+
+  /** Replaces all matches of the regex in {@code input} with this template.
+   *
+   * @param input  String to be matched.
+   * @param eflags Execution flags.
+   */
+  public String replaceAll (CharSequence input, int eflags)
+  {
+    final String s = input.toString();
+    final Matcher m = re.matcher (s, eflags);
+    if (!m.find()) {
+      return s;
+    }
+    final StringBuilder sb = new StringBuilder (s.length() + 16);
+    try {
+      replaceAll (m, sb);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException (e);  // StringBuilder does not throw.
+    }
+    return sb.toString();
+  }
+
+
+  /** Replaces all matches of the regex in {@code input} with this template
+   *  and appends the result to {@code out}.
+   *
+   * @param input  String to be matched.
+   * @param eflags Execution flags.
+   * @param out    Gets the result.
+   *
+   * @return {@code out}.
+   */
+  public <A extends Appendable> A replaceAll (CharSequence input, int eflags, A out) throws IOException
+  {
+    final Matcher m = re.matcher (input.toString(), eflags);
+    if (m.find()) {
+      replaceAll (m, out);
+    }
+    else {
+      out.append (input);
+    }
+    return out;
+  }
+
+
+  /** Appends the string of {@code m} with its matches replaced to {@code out}.
+   *  {@code m} has found the first match.
+   */
+  private void replaceAll (Matcher m, Appendable out) throws IOException
+  {
+    final String s = m.string();
+    int last = 0;
+    do {
+      out.append (s, last, m.start());
+      expand (m, s, out);
+      last = m.end();
+    } while (m.find());
+    out.append (s, last, s.length());
+  }
+
+
+  /** Appends this template with the submatches of {@code match} to {@code out}.
+   *
+   * @param match  A match.
+   * @param string The string that was matched.
+   * @param out    Gets the replacement.
+   */
+  public void expand (MatchResult match, CharSequence string, Appendable out) throws IOException
+  {
+    for (int i = 0; i < ops.length; i += 2) {
+      final int op = ops[i];
+      if (op <= LITERAL) {
+        out.append (text, LITERAL - op, ops[i + 1]);
+      }
+      else {
+        final int start = match.start (op);
+        if (start >= 0) out.append (string, start, match.end (op));
+      }
+    }
+  }
+
+
+  /** Appends this template with the submatches of {@code match} to {@code sb}. */
+  void expand (MatchResult match, CharSequence string, StringBuilder sb)
+  {
+    try {
+      expand (match, string, (Appendable)sb);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException (e);  // StringBuilder does not throw.
+    }
+  }
+
+
+  /** Appends this template with the submatches of {@code match} to {@code sb}. */
+  void expand (MatchResult match, CharSequence string, StringBuffer sb)
+  {
+    try {
+      expand (match, string, (Appendable)sb);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException (e);  // StringBuffer does not throw.
+    }
+  }
+
+
+  private static boolean isLatin1Digit (char c)
+  {
+    return c >= '0' && c <= '9';
+  }
+
+
+  /** An operation {@code LITERAL - s, e} copies {@code text[s..e)}, and
+   *  {@code g, 0} copies submatch {@code g}.
+   */
+  private static final int LITERAL = -1;
+
+  private final RE re;
+  private final String template;
+  private final String text;   // Literal parts of the template.
+  private final int[] ops;     // Pairs of ints, see LITERAL.
+}
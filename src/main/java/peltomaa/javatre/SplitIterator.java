@@ -0,0 +1,96 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/** Finds the pieces of a string between the matches of a regex one at a
+ *  time, for {@link RE#splitAsStream(CharSequence,int)}.<p>
+ *
+ *  The pieces are {@code input.subSequence} views of the input. As in
+ *  {@code java.util.regex.Pattern.splitAsStream}, trailing empty pieces
+ *  are dropped, and an empty match at the start of the input does not
+ *  make an empty first piece. Empty pieces are counted and returned only
+ *  when a non-empty piece follows them, so the input is scanned once.
+ */
+final class SplitIterator implements Iterator<CharSequence> {
+  SplitIterator (RE re, CharSequence input, int eflags)
+  {
+    this.input = input;
+    this.matcher = re.matcher (input.toString(), eflags);
+  }
+
+
+  @Override
+  public boolean hasNext()
+  {
+    if (next != null || emptyCount > 0) {
+      return true;
+    }
+    if (current == input.length()) {
+      return false;
+    }
+    while (matcher.find()) {
+      if (matcher.end() == 0) {
+        continue;  // Empty match at the start.
+      }
+      final int start = matcher.start();
+      final int previous = current;
+      current = matcher.end();
+      if (start > previous) {
+        next = input.subSequence (previous, start);
+        return true;
+      }
+      emptyCount++;
+    }
+    // The rest after the last match. Empty pieces before it are dropped if it is empty.
+    final int previous = current;
+    current = input.length();
+    if (previous < current) {
+      next = input.subSequence (previous, current);
+      return true;
+    }
+    emptyCount = 0;
+    return false;
+  }
+
+
+  @Override
+  public CharSequence next()
+  {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    if (emptyCount > 0) {
+      emptyCount--;
+      return "";
+    }
+    final CharSequence s = next;
+    next = null;
+    return s;
+  }
+
+
+  private final CharSequence input;
+  private final Matcher matcher;
+  private int current = 0;       // Start of the next piece.
+  private CharSequence next;     // Next non-empty piece, if found.
+  private int emptyCount = 0;    // Empty pieces before next.
+}
@@ -217,6 +217,15 @@ public interface TRE extends Library {
   public int tre_regaexec  (regex_t preg,  String string, regamatch_t match, regaparams_t.ByValue params, int eflags);
   public int tre_regawexec (regex_t preg, WString string, regamatch_t match, regaparams_t.ByValue params, int eflags);
 
+// Versions with a maximum length argument. These can handle nul characters
+// in the middle of the string, and match a part of a longer string.
+
+  public int tre_regnexec  (regex_t preg, Pointer string, NativeLong len, NativeLong nmatch, regmatch_t[] pmatch, int eflags);
+  public int tre_regwnexec (regex_t preg, Pointer string, NativeLong len, NativeLong nmatch, regmatch_t[] pmatch, int eflags);
+
+  public int tre_reganexec  (regex_t preg, Pointer string, NativeLong len, regamatch_t match, regaparams_t.ByValue params, int eflags);
+  public int tre_regawnexec (regex_t preg, Pointer string, NativeLong len, regamatch_t match, regaparams_t.ByValue params, int eflags);
+
   public NativeLong tre_regerror (int error_code, regex_t preg, byte[] errbuf, NativeLong errbuf_size);
 
 
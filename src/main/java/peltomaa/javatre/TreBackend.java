@@ -0,0 +1,67 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+import static peltomaa.javatre.TRE.*;
+
+
+/** The functions of <a href = "http://laurikari.net/tre/">TRE</a> library
+ *  that {@link RE}, {@link Regex} and {@link FuzzyRegex} call.<p>
+ *
+ *  The implementation is {@link JnaBackend}, which calls the direct mapped
+ *  functions in {@link DirectTRE}. {@link RE#backend()} returns it.<p>
+ *
+ *  Structures are passed as pointers to their native memory. The caller
+ *  reads results from native memory itself.
+ */
+interface TreBackend {
+  /** Calls {@code tre_regwcomp}. */
+  int regwcomp (Pointer preg, String regex, int cflags);
+
+  /** Calls {@code tre_regfree}. */
+  void regfree (Pointer preg);
+
+  /** Calls {@code tre_regwnexec}. {@code string} points to {@code len}
+   *  {@code wchar_t}s, that need not be nul terminated.
+   */
+  int regwnexec (Pointer preg, Pointer string, long len, long nmatch, Pointer pmatch, int eflags);
+
+  /** Calls {@code tre_regawnexec}. {@code string} points to {@code len}
+   *  {@code wchar_t}s, that need not be nul terminated.
+   *  {@code params} must have been written to native memory.
+   */
+  int regawnexec (Pointer preg, Pointer string, long len, Pointer match, regaparams_t.ByValue params, int eflags);
+
+  /** Calls {@code tre_regnexec}. {@code string} points to {@code len}
+   *  bytes, that need not be nul terminated.
+   */
+  int regnexec (Pointer preg, Pointer string, long len, long nmatch, Pointer pmatch, int eflags);
+
+  /** Calls {@code tre_reganexec}. {@code string} points to {@code len}
+   *  bytes, that need not be nul terminated.
+   *  {@code params} must have been written to native memory.
+   */
+  int reganexec (Pointer preg, Pointer string, long len, Pointer match, regaparams_t.ByValue params, int eflags);
+
+  /** Calls {@code tre_regerror} and returns the error message. */
+  String regerror (int errcode, Pointer preg);
+
+  /** Returns the name of this backend, e.g. "jna". */
+  String name();
+}
@@ -0,0 +1,160 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package peltomaa.javatre;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+
+/** {@link JfrEvents} with {@code jdk.jfr} events.<p>
+ *
+ *  Each event type has a probe instance whose {@code isEnabled()} tells
+ *  whether any recording has enabled the event, so nothing is allocated
+ *  when the event is not recorded. {@code TreExec} has a threshold
+ *  setting (0 ms by default) like the JDK's own I/O events.<p>
+ *
+ *  This class is compiled only with Java 11 or later, and is in directory
+ *  {@code META-INF/versions/11} of the multi-release jar file.
+ */
+final class JfrEventsImpl implements JfrEvents {
+  @Name ("peltomaa.javatre.TreCompile")
+  @Label ("TRE Compile")
+  @Category ("javatre")
+  @Description ("Compilation of a regular expression with tre_regwcomp")
+  static final class TreCompile extends Event {
+    @Label ("Pattern") String pattern;
+    @Label ("Compilation Flags") int cflags;
+    @Label ("Error Code") @Description ("0 if the regular expression compiled") int errorCode;
+  }
+
+
+  @Name ("peltomaa.javatre.TreExec")
+  @Label ("TRE Exec")
+  @Category ("javatre")
+  @Description ("Matching of a regular expression")
+  @Threshold ("0 ms")
+  static final class TreExec extends Event {
+    @Label ("Pattern") String pattern;
+    @Label ("Pattern Id") @Description ("Identity hash code of the compiled regular expression") int patternId;
+    @Label ("Input Length") @Description ("Length of the input in characters or bytes") int inputLength;
+    @Label ("Engine") @Description ("TRE backend, or java for the bit-parallel engine") String engine;
+    @Label ("Matched") boolean matched;
+    @Label ("Result") @Description ("Return value: 0, REG_NOMATCH or an error code") int result;
+    @Label ("Cost") @Description ("Cost of a fuzzy match, -1 for other matches") int cost;
+  }
+
+
+  @Name ("peltomaa.javatre.TreLibraryLoad")
+  @Label ("TRE Library Load")
+  @Category ("javatre")
+  @Description ("Loading of the native TRE library")
+  @StackTrace (false)
+  static final class TreLibraryLoad extends Event {
+    @Label ("Library Name") @Description ("Entry of the library names that was loaded, empty if none") String libraryName;
+    @Label ("Path") String path;
+    @Label ("Attempts") int attempts;
+    @Label ("Loaded") boolean loaded;
+  }
+
+
+  @Override
+  public Object beginCompile()
+  {
+    if (!COMPILE.isEnabled()) return null;
+    final TreCompile e = new TreCompile();
+    e.begin();
+    return e;
+  }
+
+
+  @Override
+  public void endCompile (Object event, String pattern, int cflags, int errcode)
+  {
+    final TreCompile e = (TreCompile)event;
+    e.end();
+    if (e.shouldCommit()) {
+      e.pattern = pattern;
+      e.cflags = cflags;
+      e.errorCode = errcode;
+      e.commit();
+    }
+  }
+
+
+  @Override
+  public Object beginExec()
+  {
+    if (!EXEC.isEnabled()) return null;
+    final TreExec e = new TreExec();
+    e.begin();
+    return e;
+  }
+
+
+  @Override
+  public void endExec (Object event, String pattern, int patternId, int length, String engine, int result, int cost)
+  {
+    final TreExec e = (TreExec)event;
+    e.end();
+    if (e.shouldCommit()) {
+      e.pattern = pattern;
+      e.patternId = patternId;
+      e.inputLength = length;
+      e.engine = engine;
+      e.matched = (result == 0);
+      e.result = result;
+      e.cost = cost;
+      e.commit();
+    }
+  }
+
+
+  @Override
+  public Object beginLibraryLoad()
+  {
+    if (!LIBRARY_LOAD.isEnabled()) return null;
+    final TreLibraryLoad e = new TreLibraryLoad();
+    e.begin();
+    return e;
+  }
+
+
+  @Override
+  public void endLibraryLoad (Object event, String libraryName, String path, int attempts)
+  {
+    final TreLibraryLoad e = (TreLibraryLoad)event;
+    e.end();
+    if (e.shouldCommit()) {
+      e.libraryName = libraryName;
+      e.path = path;
+      e.attempts = attempts;
+      e.loaded = !libraryName.isEmpty();
+      e.commit();
+    }
+  }
+
+
+  // Never committed; only tell whether the event types are enabled.
+  private static final TreCompile COMPILE = new TreCompile();
+  private static final TreExec EXEC = new TreExec();
+  private static final TreLibraryLoad LIBRARY_LOAD = new TreLibraryLoad();
+}
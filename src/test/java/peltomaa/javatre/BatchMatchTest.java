@@ -0,0 +1,85 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+/**
+ * Compares {@link RE#matchAll(List)} with a {@link Matcher} for each string.
+ */
+public class BatchMatchTest {
+  private static final String SMILE = new String (Character.toChars (0x1F600));
+
+
+  @Test
+  public void exact()
+  {
+    compare (RE.compile ("k(u+)kka", REG_EXTENDED));
+  }
+
+
+  @Test
+  public void fuzzy()
+  {
+    compare (RE.compile ("kukka", REG_EXTENDED, AparamsBuilder.build1()));
+  }
+
+
+  @Test
+  public void bitSet()
+  {
+    BitSet out = new BitSet();
+    out.set (5);
+    assertEquals (2, RE.compile ("ku+kka").matchBatch (new String[] {"kukka", "", "kuukka", "kakka"}, out));
+    assertEquals ("{0, 2}", out.toString());
+  }
+
+
+  private static void compare (RE re)
+  {
+    List<String> strings = new ArrayList<>();
+    for (int i = 0; i < 50000; i++) {
+      StringBuilder sb = new StringBuilder();
+      for (int k = 0; k < i % 13; k++) sb.append ((k % 5 == 0) ? SMILE : "x");
+      sb.append ("kuu".substring (0, i % 4)).append ((i % 3 == 0) ? "kka" : "kkx");
+      strings.add (sb.toString());
+    }
+
+    BatchResult result = re.matchAll (strings);
+    BatchResult parallel = re.matchAllParallel (strings, 0);
+    Matcher m = re.matcher ("");
+    for (int i = 0; i < strings.size(); i++) {
+      m.reset (strings.get (i), 0);
+      final boolean found = m.find();
+      assertEquals (strings.get (i), found, result.matched (i));
+      assertEquals (found ? m.start() : -1, result.start (i));
+      assertEquals (found ? m.end() : -1, result.end (i));
+      assertEquals (result.start (i), parallel.start (i));
+      assertEquals (result.end (i), parallel.end (i));
+      assertEquals (result.cost (i), parallel.cost (i));
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class BestMatchTest {
+  private static final TRE.regaparams_t.ByValue UP_TO_3 =
+    new AparamsBuilder().max_cost (3).max_ins (3).max_del (3).max_subst (3).max_err (3).build();
+
+
+  @Test
+  public void exact()
+  {
+    Match m = RE.compile ("kukka", REG_EXTENDED, UP_TO_3).bestMatch ("xx kukka yy");
+    assertEquals (3, m.start());
+    assertEquals (8, m.end());
+    assertEquals (0, m.cost());
+  }
+
+
+  @Test
+  public void lowestCost()
+  {
+    RE re = RE.compile ("kukkaro", REG_EXTENDED, UP_TO_3);
+    Match m = re.bestMatch ("kukkar");
+    assertEquals (1, m.cost());
+    assertEquals (1, m.numIns() + m.numDel() + m.numSubst());
+
+    m = re.bestMatch ("kikkaru");
+    assertEquals (2, m.cost());
+    assertEquals ("kikkaru", m.group());
+
+    assertNull (re.bestMatch ("koira"));
+  }
+
+
+  @Test
+  public void ordinary()
+  {
+    Match m = RE.compile ("k(u+)kka", REG_EXTENDED).bestMatch ("a kuukka");
+    assertEquals (0, m.cost());
+    assertEquals ("uu", m.group (1));
+    assertEquals (1, m.groupCount());
+  }
+}
@@ -0,0 +1,153 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class BitParallelRegexTest {
+  @Test
+  public void accepts()
+  {
+    assertTrue (RE.compile ("kukka", REG_LITERAL) instanceof BitParallelRegex);
+    assertTrue (RE.compile ("kukka", REG_LITERAL | REG_NOSUB, AparamsBuilder.build1()) instanceof BitParallelRegex);
+    assertFalse (BitParallelRegex.accepts ("kukka", REG_LITERAL, AparamsBuilder.build1()));
+    assertFalse (BitParallelRegex.accepts ("kukka", REG_EXTENDED, null));
+    assertFalse (BitParallelRegex.accepts ("kukka", REG_LITERAL | REG_ICASE, null));
+    assertFalse (BitParallelRegex.accepts ("kukka", REG_LITERAL, new AparamsBuilder().cost_subst (2).build()));
+    assertFalse (BitParallelRegex.accepts ("kukka", REG_LITERAL, new AparamsBuilder().max_cost (2).max_subst (1).build()));
+  }
+
+
+  @Test
+  public void exact()
+  {
+    RE re = RE.compile ("k(u", REG_LITERAL);
+    Matcher m = re.matcher ("xk(uk(u");
+    assertTrue (m.find());
+    assertEquals (1, m.start());
+    assertEquals (4, m.end());
+    assertTrue (m.find());
+    assertEquals (4, m.start());
+    assertFalse (m.find());
+    assertFalse (re.wmatch ("kuu"));
+  }
+
+
+  @Test
+  public void fuzzy()
+  {
+    RE re = new BitParallelRegex ("kukka", REG_LITERAL, AparamsBuilder.build1());
+    assertEquals (0, re.wexec ("aaa kukko kukka", 0));
+    MatchData md = re.matchData.get();
+    assertEquals (4, md.start (0));
+    assertEquals (8, md.end (0));  // "kukk" with one delete ends before "kukko".
+    assertEquals (1, md.cost());
+    assertEquals (1, md.numDel());
+
+    Matcher m = re.matcher ("aaa kukko kukka");
+    assertTrue (m.find());
+    assertTrue (m.find());
+    assertEquals (10, m.start());
+
+    Match best = re.bestMatch ("aaa kukko kukka");
+    assertEquals (10, best.start());
+    assertEquals (0, best.cost());
+
+    best = re.bestMatch ("aaa kuka");
+    assertEquals (4, best.start());
+    assertEquals (8, best.end());
+    assertEquals (1, best.numDel());
+    assertNull (re.bestMatch ("aaa kuoa"));
+  }
+
+
+  @Test
+  public void findAfterEnd()
+  {
+    // find() stays false after it has returned false, and there is no match.
+    Matcher m = new BitParallelRegex ("kukka", REG_LITERAL, AparamsBuilder.build1()).matcher ("xx kukka yy");
+    assertTrue (m.find());
+    assertEquals (3, m.start());
+    assertFalse (m.find());
+    assertEquals (-1, m.start());
+    assertFalse (m.find());
+    assertTrue (m.reset().find());
+    assertEquals (3, m.start());
+
+    // The prefilter rejects the rest of the string.
+    m = RE.compile ("kukka", REG_LITERAL).matcher ("kukka xx");
+    assertTrue (m.find());
+    assertFalse (m.find());
+    assertEquals (-1, m.end());
+  }
+
+
+  /** Compares the offsets and costs with {@code tre_regawnexec}. Fuzzy
+   *  patterns without {@code REG_NOSUB} are compiled by TRE until this
+   *  has passed.
+   */
+  @Test
+  public void sameAsTRE()
+  {
+    final Random random = new Random (17);
+    for (int round = 0; round < 2000; round++) {
+      final String pattern = randomString (random, 1 + random.nextInt (8));
+      final String string = randomString (random, random.nextInt (30));
+      final int k = random.nextInt (4);
+      final regaparams_t.ByValue p = new AparamsBuilder().max_cost (k).max_err (k).build();
+
+      final RE tre = new FuzzyRegex (pattern, REG_LITERAL, p);
+      final RE java = new BitParallelRegex (pattern, REG_LITERAL, p);
+      final String what = pattern + " in " + string + ", k = " + k;
+
+      final int result = tre.wexec (string, 0);
+      assertEquals (what, result, java.wexec (string, 0));
+      if (result == 0) {
+        final MatchData a = tre.matchData.get();
+        final MatchData b = java.matchData.get();
+        assertEquals (what, a.start (0), b.start (0));
+        assertEquals (what, a.end (0), b.end (0));
+        assertEquals (what, a.cost(), b.cost());
+        assertEquals (what, a.numIns(), b.numIns());
+        assertEquals (what, a.numDel(), b.numDel());
+        assertEquals (what, a.numSubst(), b.numSubst());
+        assertEquals (what, tre.bestMatch (string).cost(), java.bestMatch (string).cost());
+      }
+      tre.close();
+    }
+  }
+
+
+  private static String randomString (Random random, int length)
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      sb.append ((char)('a' + random.nextInt (3)));
+    }
+    return sb.toString();
+  }
+}
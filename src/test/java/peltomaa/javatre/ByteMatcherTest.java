@@ -0,0 +1,86 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class ByteMatcherTest {
+  private static final byte[] TEXT = "xx kuukka kukka äiti".getBytes (StandardCharsets.UTF_8);
+
+
+  @Test
+  public void array()
+  {
+    RE re = RE.compileBytes ("k(u+)kka", REG_EXTENDED);
+    ByteMatcher m = re.matcher (TEXT, 2, TEXT.length - 2);
+    assertTrue (m.find());
+    assertEquals (3, m.start());
+    assertEquals (9, m.end());
+    assertEquals (4, m.start (1));
+    assertEquals (6, m.end (1));
+    assertTrue (m.find());
+    assertEquals (10, m.start());
+    assertFalse (m.find());
+    assertFalse (m.find());  // Does not start again from the beginning.
+    assertTrue (m.reset().find());
+    assertEquals (3, m.start());
+  }
+
+
+  @Test
+  public void directBuffer()
+  {
+    ByteBuffer b = ByteBuffer.allocateDirect (TEXT.length);
+    b.put (TEXT).flip();
+    b.position (3);
+
+    // "ä" is two bytes in UTF-8.
+    ByteMatcher m = RE.compileBytes ("äiti", REG_EXTENDED).matcher (b);
+    assertTrue (m.find());
+    assertEquals (16, m.start());
+    assertEquals (TEXT.length, m.end());
+    assertEquals (3, b.position());
+  }
+
+
+  @Test
+  public void fuzzy()
+  {
+    RE re = RE.compileBytes ("kukka", REG_EXTENDED, AparamsBuilder.build1());
+    ByteMatcher m = re.matcher (ByteBuffer.wrap (TEXT));
+    assertTrue (m.find());
+    assertEquals (3, m.start());
+    assertEquals (1, m.cost());
+  }
+
+
+  @Test(expected = IllegalStateException.class)
+  public void notBytes()
+  {
+    RE.compile ("kukka", REG_EXTENDED).matcher (TEXT, 0, TEXT.length);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+/**
+ * Many threads use one compiled regular expression at the same time.
+ * Each thread checks that it gets the offsets of its own string.
+ */
+public class ConcurrencyTest {
+  private static final int THREADS = 16;
+  private static final int ROUNDS = 20000;
+
+
+  @Test
+  public void exactMatcher() throws Exception
+  {
+    run (RE.compile ("k(u+)kka", REG_EXTENDED));
+  }
+
+
+  @Test
+  public void fuzzyMatcher() throws Exception
+  {
+    run (RE.compile ("k(u+)kka", REG_EXTENDED, AparamsBuilder.build1()));
+  }
+
+
+  @Test
+  public void wexec() throws Exception
+  {
+    final RE re = RE.compile ("k(u+)kka", REG_EXTENDED);
+    stress (t -> {
+      for (int i = 0; i < ROUNDS; i++) {
+        final int prefix = (t * 7 + i) % 50;
+        final int u = 1 + (t + i) % 5;
+        assertEquals (0, re.wexec (subject (prefix, u), 0));
+        TRE.regmatch_t[] p = re.pmatch();
+        assertEquals (prefix, p[0].rm_so);
+        assertEquals (prefix + u + 4, p[0].rm_eo);
+        assertEquals (prefix + 1, p[1].rm_so);
+        assertEquals (prefix + 1 + u, p[1].rm_eo);
+      }
+    });
+  }
+
+
+  private void run (final RE re) throws Exception
+  {
+    stress (t -> {
+      Matcher m = re.matcher ("");
+      for (int i = 0; i < ROUNDS; i++) {
+        final int prefix = (t * 7 + i) % 50;
+        final int u = 1 + (t + i) % 5;
+        m.reset (subject (prefix, u), 0);
+        assertTrue (m.find());
+        assertEquals (prefix, m.start());
+        assertEquals (prefix + u + 4, m.end());
+        assertEquals (prefix + 1, m.start (1));
+        assertEquals (prefix + 1 + u, m.end (1));
+      }
+    });
+  }
+
+
+  /** Returns "xxx...xku...ukka yyyy" with {@code prefix} x's and {@code u} u's. */
+  private static String subject (int prefix, int u)
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < prefix; i++) sb.append ('x');
+    sb.append ('k');
+    for (int i = 0; i < u; i++) sb.append ('u');
+    sb.append ("kka yyyy");
+    return sb.toString();
+  }
+
+
+  private interface Task {
+    void run (int thread) throws Exception;
+  }
+
+
+  private static void stress (final Task task) throws Exception
+  {
+    ExecutorService pool = Executors.newFixedThreadPool (THREADS);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        final int thread = t;
+        futures.add (pool.submit ((Callable<Void>)() -> {task.run (thread); return null;}));
+      }
+      for (Future<Void> f : futures) {
+        f.get();  // Rethrows assertion errors of the threads.
+      }
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static peltomaa.javatre.TRE.*;
+
+
+/**
+ * Scans a file with small windows, so that many matches cross window
+ * boundaries, and compares the results with a {@link ByteMatcher}
+ * that matches the whole file at once.
+ */
+public class FileScannerTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+
+  @Test
+  public void exact() throws Exception
+  {
+    compare (RE.compileBytes ("k(u+)kka", REG_EXTENDED));
+  }
+
+
+  @Test
+  public void lines() throws Exception
+  {
+    compare (RE.compileBytes ("^[a-z]+$", REG_EXTENDED | REG_NEWLINE));
+  }
+
+
+  @Test
+  public void fuzzy() throws Exception
+  {
+    compare (RE.compileBytes ("kukka", REG_EXTENDED, AparamsBuilder.build1()));
+  }
+
+
+  private void compare (RE re) throws Exception
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      sb.append ("x").append (i).append (" kuu".substring (0, 1 + i % 4)).append ("kka\n");
+      if (i % 7 == 0) sb.append ("kukka\n");
+    }
+    final byte[] bytes = sb.toString().getBytes (StandardCharsets.UTF_8);
+    final Path file = folder.newFile().toPath();
+    Files.write (file, bytes);
+
+    List<String> expected = new ArrayList<>();
+    ByteMatcher m = re.matcher (bytes, 0, bytes.length);
+    while (m.find()) {
+      expected.add (m.start() + "-" + m.end() + ":" + m.cost());
+    }
+
+    for (int window : new int[] {7, 16, 100, 1 << 20}) {
+      List<String> actual = new ArrayList<>();
+      new FileScanner (re.checkBytes(), window, 16).scan (file, 0, (start, end, cost) -> actual.add (start + "-" + end + ":" + cost));
+      assertEquals ("window " + window, expected, actual);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class FuzzyDictionaryTest {
+  private static final List<String> WORDS = Arrays.asList (
+    "kukka", "kakku", "kukko", "kikka", "sukka", "kuk", "appelsiini", "kukkaro");
+
+
+  @Test
+  public void candidates()
+  {
+    FuzzyDictionary d = new FuzzyDictionary (WORDS, 2);
+    assertArrayEquals (new int[] {0, 7}, d.candidates ("kukka", 0));
+    // With one error 4 - 2 = 2 of the bigrams ku, uk, kk, ka must be in the entry.
+    assertArrayEquals (new int[] {0, 1, 2, 3, 4, 5, 7}, d.candidates ("kukka", 1));
+    assertEquals (WORDS.size(), d.candidates ("kukka", 2).length);
+    assertEquals (WORDS.size(), d.candidates ("kukka", -1).length);
+  }
+
+
+  @Test
+  public void lookup()
+  {
+    FuzzyDictionary d = new FuzzyDictionary (WORDS, 2);
+    regaparams_t.ByValue p = new AparamsBuilder().max_cost (1).max_err (1).build();
+
+    List<FuzzyDictionary.Hit> hits = d.lookup ("kukka", p, 3);
+    assertEquals (3, hits.size());
+    assertEquals ("kukka", hits.get (0).entry());
+    assertEquals (0, hits.get (0).cost());
+    assertEquals ("kukkaro", hits.get (1).entry());
+    assertEquals (0, hits.get (1).cost());
+    assertEquals (1, hits.get (2).cost());
+
+    List<List<FuzzyDictionary.Hit>> all = d.lookupAll (Arrays.asList ("kukka", "appelsiimi"), p, 10);
+    assertEquals (hits.get (2).entry(), all.get (0).get (2).entry());
+    assertEquals ("appelsiini", all.get (1).get (0).entry());
+  }
+}
@@ -125,6 +125,7 @@ public class JavaTRETest
 
 
   @Test
+  @SuppressWarnings("deprecation")  // Tests split(String,int).
   public void test7()
   {
     final String s = "aaxbbbxxcccxdddx";
@@ -147,4 +148,62 @@ public class JavaTRETest
     String s = m.replaceAll ("X");
     assertTrue ("To X or not to X or XX.".equals(s));
   }
+
+
+  @Test
+  public void test9()
+  {
+    // An empty match must not make find() loop forever.
+    RE re = RE.compile ("x*", REG_EXTENDED);
+    Matcher m = re.matcher ("axxb");
+    StringBuilder sb = new StringBuilder();
+    while (m.find()) {
+      sb.append (m.start()).append ('-').append (m.end()).append (' ');
+    }
+    assertEquals ("0-0 1-3 3-3 ", sb.toString());
+  }
+
+
+  @Test
+  public void test10()
+  {
+    // "^" matches only at the start of the string, or at the start
+    // of a line with REG_NEWLINE.
+    Matcher m = RE.compile ("^a", REG_EXTENDED).matcher ("aaa\naa");
+    int n = 0;
+    while (m.find()) n++;
+    assertEquals (1, n);
+
+    m = RE.compile ("^a", REG_EXTENDED | REG_NEWLINE).matcher ("aaa\naa");
+    n = 0;
+    while (m.find()) {
+      assertTrue (m.start() == 0 || m.start() == 4);
+      n++;
+    }
+    assertEquals (2, n);
+  }
+
+
+  @Test
+  public void test11()
+  {
+    // close() can be called many times, and the regex cannot be used after it.
+    final long live = NativeResources.liveRegexCount();
+    RE re = RE.compile ("ku+kka", REG_EXTENDED);
+    assertEquals (live + 1, NativeResources.liveRegexCount());
+    try (RE r = re) {
+      assertTrue (r.wmatch ("kuukka"));
+    }
+    re.close();
+    re.regfree();
+    assertTrue (re.isClosed());
+    assertEquals (live, NativeResources.liveRegexCount());
+    try {
+      re.wmatch ("kuukka");
+      fail();
+    }
+    catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
 }
@@ -0,0 +1,85 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class LineMatcherTest {
+  private static final String TEXT = "kukka kuukka\r\nei mitään\n\nkukkakukka\nloppu kukka";
+
+
+  @Test
+  public void count() throws Exception
+  {
+    LineMatcher lm = new LineMatcher (RE.compile ("ku+kka", REG_EXTENDED), LineMatcher.Mode.COUNT);
+    assertEquals (3, lm.match (new StringReader (TEXT), null));
+    assertEquals (5, lm.lineNumber());
+  }
+
+
+  @Test
+  public void all() throws Exception
+  {
+    final List<String> found = new ArrayList<>();
+    final LineMatcher lm = new LineMatcher (RE.compile ("ku+kka", REG_EXTENDED), LineMatcher.Mode.ALL);
+    lm.match (new StringReader (TEXT), (line, start, end, cost) -> {
+      found.add (line + ":" + lm.line().substring (start, end));
+      return true;
+    });
+    assertEquals ("[1:kukka, 1:kuukka, 4:kukka, 4:kukka, 5:kukka]", found.toString());
+  }
+
+
+  @Test
+  public void firstBytes() throws Exception
+  {
+    final List<String> found = new ArrayList<>();
+    final LineMatcher lm = new LineMatcher (RE.compileBytes ("ku+kka|mitään$", REG_EXTENDED), LineMatcher.Mode.FIRST);
+    byte[] b = TEXT.getBytes (StandardCharsets.UTF_8);
+    assertEquals (4, lm.match (new ByteArrayInputStream (b), (line, start, end, cost) -> {
+      found.add (line + ":" + start + "-" + end + "@" + lm.lineOffset());
+      return true;
+    }));
+    // "ä" is two bytes.
+    assertEquals ("[1:0-5@0, 2:3-11@14, 4:0-5@27, 5:6-11@38]", found.toString());
+  }
+
+
+  @Test
+  public void longLine() throws Exception
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100000; i++) sb.append ("xy");
+    sb.append ("kukka\nkukka\n");
+
+    final List<String> found = new ArrayList<>();
+    LineMatcher lm = new LineMatcher (RE.compile ("kukka", REG_EXTENDED), LineMatcher.Mode.FIRST);
+    lm.match (new StringReader (sb.toString()), (line, start, end, cost) -> found.add (line + ":" + start));
+    assertEquals ("[1:200000, 2:0]", found.toString());
+  }
+}
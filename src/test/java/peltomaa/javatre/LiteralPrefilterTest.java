@@ -0,0 +1,116 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+/**
+ * Tests for {@link LiteralPrefilter}. These do not need the TRE library.
+ */
+public class LiteralPrefilterTest {
+  @Test
+  public void extended()
+  {
+    assertEquals (Arrays.asList ("ERROR ", " timeout"), literals ("ERROR .* timeout", REG_EXTENDED));
+    assertEquals (Arrays.asList ("k", "kka"), literals ("ku+kka", REG_EXTENDED));  // "u" is repeated.
+    assertEquals (Arrays.asList ("x", "y.z"), literals ("x(a|b)[yz]*y\\.z\\w", REG_EXTENDED));
+    assertEquals (Collections.emptyList(), literals ("foo|bar", REG_EXTENDED));
+    assertEquals (Collections.emptyList(), literals ("(?i)foo", REG_EXTENDED));
+    assertEquals (Arrays.asList ("a+b"), literals ("a+b", REG_LITERAL));
+  }
+
+
+  @Test
+  public void basic()
+  {
+    assertEquals (Arrays.asList ("a+", "c"), literals ("a+b*c", REG_BASIC));
+    assertEquals (Arrays.asList ("x", "y"), literals ("x\\(ab\\)*y", REG_BASIC));
+  }
+
+
+  @Test
+  public void wordBoundary()
+  {
+    assertEquals (Arrays.asList ("foo"), literals ("\\<foo\\>", REG_BASIC));
+    assertEquals (Arrays.asList ("foo"), literals ("\\<foo\\>", REG_EXTENDED));
+    assertEquals (Arrays.asList ("a", "b"), literals ("a\\<b", REG_EXTENDED));
+    assertTrue (LiteralPrefilter.of ("\\<foo\\>", REG_EXTENDED, null).mayMatch ("a foo b", 0));
+  }
+
+
+  @Test
+  public void hexEscape()
+  {
+    assertEquals (Arrays.asList ("BC"), literals ("\\x41BC", REG_EXTENDED));
+    assertEquals (Arrays.asList ("foo", "bar"), literals ("foo\\x2Cbar", REG_EXTENDED));
+    assertEquals (Arrays.asList ("a", "b"), literals ("a\\x{263a}b", REG_EXTENDED));
+    assertTrue (LiteralPrefilter.of ("foo\\x2Cbar", REG_EXTENDED, null).mayMatch ("foo,bar", 0));
+  }
+
+
+  @Test
+  public void exact()
+  {
+    LiteralPrefilter p = LiteralPrefilter.of ("ERROR .* timeout", REG_EXTENDED, null);
+    assertTrue (p.mayMatch ("12:00 ERROR disk timeout", 0));
+    assertFalse (p.mayMatch ("12:00 ERROR disk full", 0));
+    assertFalse (p.mayMatch ("12:00 ERROR disk timeout", 7));
+    assertEquals (1, p.passed());
+    assertEquals (2, p.skipped());
+  }
+
+
+  @Test
+  public void ignoreCase()
+  {
+    LiteralPrefilter p = LiteralPrefilter.of ("timeout", REG_EXTENDED | REG_ICASE, null);
+    assertTrue (p.mayMatch (new StringBuilder ("xx TimeOut"), 0));
+    assertFalse (p.mayMatch ("time out", 0));
+  }
+
+
+  @Test
+  public void fuzzy()
+  {
+    // Two errors, three pieces: "ku", "kk", "a".
+    LiteralPrefilter p = LiteralPrefilter.of ("kukka", REG_EXTENDED,
+      new AparamsBuilder().max_cost (2).max_ins (2).max_del (2).max_subst (2).max_err (2).build());
+    assertEquals (Arrays.asList ("k", "uk", "ka"), p.literals());
+    assertTrue (p.mayMatch ("xxkxx", 0));
+    assertFalse (p.mayMatch ("xxxxx", 0));
+
+    // No limit on errors.
+    assertNull (LiteralPrefilter.of ("kukka", REG_EXTENDED, new AparamsBuilder().build()));
+  }
+
+
+  private static Object literals (String regex, int cflags)
+  {
+    return LiteralPrefilter.requiredLiterals (regex, cflags);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class MetricsTest {
+  @Before
+  public void setUp()
+  {
+    Metrics.reset();
+    Metrics.setEnabled (true);
+  }
+
+
+  @After
+  public void tearDown()
+  {
+    Metrics.setEnabled (false);
+    Metrics.setSlowMatchThresholdMillis (0);
+    Metrics.reset();
+  }
+
+
+  @Test
+  public void counts() throws Exception
+  {
+    final AtomicInteger events = new AtomicInteger();
+    final MetricsListener listener = new MetricsListener() {
+      @Override
+      public void executed (RE re, int length, long nanos, int result)
+      {
+        events.incrementAndGet();
+      }
+    };
+    Metrics.addListener (listener);
+    try {
+      RE re = RE.compile ("kukka", REG_LITERAL);
+      assertTrue (re.wmatch ("a kukka"));
+      assertFalse (re.wmatch ("a kakku"));
+      re.matchAll (Arrays.asList ("kukka", "x", "kukkaro"));
+    }
+    finally {
+      Metrics.removeListener (listener);
+    }
+
+    assertEquals (5, Metrics.execCount());
+    assertEquals (5, events.get());
+    assertEquals (2, Metrics.noMatchCount());
+    assertEquals (7 + 7 + 5 + 1 + 7, Metrics.inputChars());
+
+    List<PatternStats> patterns = Metrics.patterns();
+    assertEquals (1, patterns.size());
+    assertEquals ("kukka", patterns.get (0).getPattern());
+    assertEquals (5, patterns.get (0).getCount());
+    assertTrue (patterns.get (0).getP99Nanos() >= patterns.get (0).getP50Nanos());
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = Metrics.registerMBean();
+    assertEquals (5L, server.getAttribute (name, "ExecCount"));
+    assertEquals (1, ((Object[])server.getAttribute (name, "Patterns")).length);
+  }
+
+
+  @Test
+  public void slowMatch()
+  {
+    final List<LogRecord> records = new ArrayList<>();
+    final Handler handler = new Handler() {
+      @Override public void publish (LogRecord r) {records.add (r);}
+      @Override public void flush() {}
+      @Override public void close() {}
+    };
+    final Logger log = Logger.getLogger (Metrics.class.getName());
+    log.addHandler (handler);
+    try {
+      Metrics.setSlowMatchThresholdMillis (1);
+      char[] a = new char[10000000];
+      Arrays.fill (a, 'a');
+      RE re = RE.compile ("kukka", REG_LITERAL | REG_NOSUB, AparamsBuilder.build1());
+      re.wmatch (new String (a));
+    }
+    finally {
+      log.removeHandler (handler);
+    }
+    assertEquals (1, Metrics.slowMatchCount());
+    assertEquals (1, records.size());
+    assertEquals ("kukka", records.get (0).getParameters()[1]);
+    assertEquals (10000000, records.get (0).getParameters()[4]);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link NativeCleaner}. These do not need the TRE library.
+ */
+public class NativeCleanerTest {
+  @Test
+  public void cleanOnce()
+  {
+    final AtomicInteger count = new AtomicInteger();
+    NativeCleaner.Cleanable c = NativeCleaner.register (new Object(), count::incrementAndGet);
+    c.clean();
+    c.clean();
+    assertEquals (1, count.get());
+  }
+
+
+  @Test
+  public void cleanUnreachable() throws InterruptedException
+  {
+    final AtomicInteger count = new AtomicInteger();
+    NativeCleaner.register (new Object(), count::incrementAndGet);
+    for (int i = 0; i < 100 && count.get() == 0; i++) {
+      System.gc();
+      Thread.sleep (10);
+    }
+    assertEquals (1, count.get());
+  }
+}
@@ -0,0 +1,131 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import com.sun.jna.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link NativeSubject}. These do not need the TRE library.
+ */
+public class NativeSubjectTest {
+  private static final String SMILE = new String (Character.toChars (0x1F600));
+
+
+  @Test
+  public void noSurrogates()
+  {
+    NativeSubject subject = new NativeSubject();
+    subject.set ("kukka");
+    assertEquals (5, subject.length());
+    for (int i = 0; i <= 5; i++) {
+      assertEquals (i, subject.toChar (i));
+      assertEquals (i, subject.toWide (i));
+    }
+    assertEquals ('k', wchar (subject, 0));
+    assertEquals ('a', wchar (subject, 4));
+  }
+
+
+  @Test
+  public void buffersAreCounted() throws InterruptedException
+  {
+    final long size = 100000L * Native.WCHAR_SIZE;
+    final long live = NativeResources.liveBufferBytes();
+    NativeSubject subject = new NativeSubject();
+    subject.set (new String (new char[100000]));
+    assertTrue (NativeResources.liveBufferBytes() >= live + size);
+
+    // JNA keeps the Memory of a ByteBuffer view until its map of
+    // views is used again, so a new buffer is allocated in the loop.
+    subject = null;
+    for (int i = 0; i < 100 && NativeResources.liveBufferBytes() >= live + size; i++) {
+      System.gc();
+      Thread.sleep (10);
+      new NativeSubject();
+    }
+    assertTrue (NativeResources.liveBufferBytes() < live + size);
+  }
+
+
+  @Test
+  public void surrogatePairs()
+  {
+    if (Native.WCHAR_SIZE != 4) return;
+
+    // Chars:  a S S b S S c   (S = half of a surrogate pair)
+    // Wide:   a P   b P   c
+    NativeSubject subject = new NativeSubject();
+    subject.set ("a" + SMILE + "b" + SMILE + "c");
+    assertEquals (5, subject.length());
+    assertEquals (0x1F600, wchar (subject, 1));
+    assertEquals ('c', wchar (subject, 4));
+
+    final int[] charOffset = {0, 1, 3, 4, 6, 7};
+    for (int w = 0; w < charOffset.length; w++) {
+      assertEquals (charOffset[w], subject.toChar (w));
+      assertEquals (w, subject.toWide (charOffset[w]));
+    }
+    assertEquals (2, subject.toWide (2));  // Between the chars of a pair.
+  }
+
+
+  @Test
+  public void reuse()
+  {
+    NativeSubject subject = new NativeSubject();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) sb.append ('x');
+    subject.set (sb);
+    assertEquals (1000, subject.length());
+    subject.set ("ab");
+    assertEquals (2, subject.length());
+    assertEquals ('b', wchar (subject, 1));
+    assertEquals (1, subject.toChar (1));
+  }
+
+
+  @Test
+  public void retained()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) sb.append ('x');
+
+    NativeSubject subject = new NativeSubject (100);
+    subject.set (sb);
+    final long big = Pointer.nativeValue (subject.pointer (0));
+    subject.set ("ab");  // Shrinks the buffer.
+    assertNotEquals (big, Pointer.nativeValue (subject.pointer (0)));
+    assertEquals ('b', wchar (subject, 1));
+    final long small = Pointer.nativeValue (subject.pointer (0));
+    subject.set ("abc");
+    assertEquals (small, Pointer.nativeValue (subject.pointer (0)));
+  }
+
+
+  private static int wchar (NativeSubject subject, int i)
+  {
+    Pointer p = subject.pointer (i);
+    return (Native.WCHAR_SIZE == 2) ? p.getChar (0) : p.getInt (0);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static peltomaa.javatre.TRE.*;
+
+
+/**
+ * Searches files in small chunks with many threads and compares the
+ * results with {@link RE#scan(Path,MatchSink)}.
+ */
+public class ParallelSearchTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+
+  @Test
+  public void exactAndFuzzy() throws Exception
+  {
+    final List<Path> files = Arrays.asList (file (300), file (0), file (1000));
+    compare (RE.compileBytes ("^k(u+)kka", REG_EXTENDED | REG_NEWLINE), files);
+    compare (RE.compileBytes ("kukka", REG_EXTENDED | REG_NEWLINE, AparamsBuilder.build1()), files);
+  }
+
+
+  private void compare (RE re, List<Path> files) throws Exception
+  {
+    final List<String> expected = new ArrayList<>();
+    for (Path file : files) {
+      re.scan (file, (start, end, cost) -> expected.add (file + ":" + start + "-" + end + ((cost != 0) ? " cost " + cost : "")));
+    }
+
+    ParallelSearch search = new ParallelSearch (re, new ForkJoinPool (4), 100);
+    final List<String> actual = new ArrayList<>();
+    for (ParallelSearch.Match m : search.search (files)) {
+      actual.add (m.toString());
+    }
+    assertEquals (expected, actual);
+    assertEquals (expected.size(), search.count (files));
+
+    final AtomicLong n = new AtomicLong();
+    search.forEach (files, m -> n.incrementAndGet());
+    assertEquals (expected.size(), n.get());
+  }
+
+
+  private Path file (int lines) throws Exception
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      sb.append ("kuu".substring (0, 1 + i % 3)).append ("kka ").append (i).append (" kukka\n");
+    }
+    final Path file = folder.newFile().toPath();
+    Files.write (file, sb.toString().getBytes (StandardCharsets.UTF_8));
+    return file;
+  }
+}
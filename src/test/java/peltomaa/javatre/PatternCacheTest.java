@@ -0,0 +1,83 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class PatternCacheTest {
+  @Test
+  public void sharing()
+  {
+    PatternCache cache = new PatternCache (10, 1L << 20);
+    RE a = cache.get ("k(u+)kka", REG_EXTENDED);
+    RE b = cache.get ("k(u+)kka", REG_EXTENDED);
+    RE c = cache.get ("k(u+)kka", 0);
+    RE d = cache.get ("k(u+)kka", REG_EXTENDED, AparamsBuilder.build1());
+    RE e = cache.get ("k(u+)kka", REG_EXTENDED, AparamsBuilder.build1());
+    assertSame (a, b);
+    assertNotSame (a, c);
+    assertSame (d, e);
+    assertEquals (2, cache.hits());
+    assertEquals (3, cache.misses());
+    assertEquals (3, cache.size());
+
+    a.regfree();  // Does nothing.
+    assertTrue (b.wmatch ("kuukka"));
+  }
+
+
+  @Test
+  public void eviction()
+  {
+    PatternCache cache = new PatternCache (2, 1L << 20);
+    RE a = cache.get ("a+", REG_EXTENDED);
+    cache.get ("b+", REG_EXTENDED);
+    cache.get ("a+", REG_EXTENDED);  // Now "b+" is the least recently used.
+    cache.get ("c+", REG_EXTENDED);
+    assertEquals (2, cache.size());
+    assertEquals (1, cache.evictions());
+    assertSame (a, cache.get ("a+", REG_EXTENDED));
+    assertEquals (3, cache.misses());
+    assertEquals (2, cache.hits());
+  }
+
+
+  @Test
+  public void defaultCache()
+  {
+    PatternCache cache = new PatternCache (100, 1L << 20);
+    PatternCache.setDefault (cache);
+    try {
+      for (int i = 0; i < 10; i++) {
+        assertTrue (RE.wmatch ("ku+kka", REG_EXTENDED, "kuukka", 0));
+      }
+      assertEquals (1, cache.misses());
+      assertEquals (9, cache.hits());
+    }
+    finally {
+      PatternCache.setDefault (null);
+    }
+  }
+}
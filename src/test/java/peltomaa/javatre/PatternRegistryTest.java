@@ -0,0 +1,121 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class PatternRegistryTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+
+  @Test
+  public void eager() throws Exception
+  {
+    try (PatternRegistry r = PatternRegistry.load (write ("# name\tflags\tparams\tregex",
+                                                          "kukko\tLITERAL\tmax_err=1\tkukko",
+                                                          "",
+                                                          "kana\tREG_LITERAL|NEWLINE\t-\tkana"))) {
+      assertEquals (2, r.size());
+      assertEquals (0, r.id ("kukko"));
+      assertEquals (1, r.id ("kana"));
+      assertEquals (-1, r.id ("kukka"));
+      assertEquals ("kana", r.pattern (1));
+      assertEquals (REG_LITERAL | REG_NEWLINE, r.get (1).cflags());
+      assertTrue (r.get (0).wmatch ("aaa kuko"));
+      assertFalse (r.get (1).wmatch ("kaana"));
+      assertSame (r.get (0), r.get ("kukko"));
+      assertTrue (r.warmUp().isDone());
+
+      r.get (0).close();  // Does nothing.
+      assertFalse (r.get (0).isClosed());
+    }
+  }
+
+
+  @Test
+  public void lazy() throws Exception
+  {
+    PatternRegistry r = PatternRegistry.load (write ("a\tLITERAL\t-\tkukko", "b\tLITERAL\t-\tkana"), true);
+    assertTrue (r.get ("b").wmatch ("kanat"));
+    r.warmUp().get();
+    RE a = r.get (0);
+    r.close();
+    assertTrue (a.isClosed());
+    try {
+      r.get (1);
+      fail();
+    }
+    catch (IllegalStateException ex) {
+      // Expected.
+    }
+  }
+
+
+  @Test
+  public void errors() throws Exception
+  {
+    try {
+      PatternRegistry.load (write ("a\tLITERAL\t-\tkukko",
+                                   "b\tLITERAL|FOO\t-\tkana",
+                                   "c\tLITERAL\tmax_err=x\tkana",
+                                   "a\tLITERAL\t-\tkana",
+                                   "d\tLITERAL"));
+      fail();
+    }
+    catch (RegexSyntaxException ex) {
+      assertEquals (4, ex.getSuppressed().length);
+      assertTrue (ex.getSuppressed()[0].getMessage().endsWith (":2: Unknown flag FOO"));
+    }
+  }
+
+
+  @Test
+  public void incorrectPatterns() throws Exception
+  {
+    try {
+      PatternRegistry.load (write ("a\tEXTENDED\t-\tk(u", "b\tEXTENDED\t-\tkana", "c\tEXTENDED\t-\tk[a"));
+      fail();
+    }
+    catch (RegexSyntaxException ex) {
+      assertEquals (2, ex.getSuppressed().length);
+    }
+  }
+
+
+  private Path write (String... lines) throws Exception
+  {
+    Path file = folder.newFile().toPath();
+    Files.write (file, Arrays.asList (lines), StandardCharsets.UTF_8);
+    return file;
+  }
+}
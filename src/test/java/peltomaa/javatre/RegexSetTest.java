@@ -0,0 +1,92 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class RegexSetTest {
+  @Test
+  public void groupCount()
+  {
+    assertEquals (0, RegexSet.groupCount ("abc"));
+    assertEquals (2, RegexSet.groupCount ("(a(b))c"));
+    assertEquals (1, RegexSet.groupCount ("\\((x)\\)"));
+    assertEquals (1, RegexSet.groupCount ("[(][]()][[:alpha:](](y)"));
+  }
+
+
+  @Test
+  public void example()
+  {
+    RegexSet set = new RegexSet (Arrays.asList ("ERROR", "time ?out", "disk (full|failure)"), REG_EXTENDED);
+    assertEquals ("{0, 2}", set.match ("ERROR: disk full").toString());
+    assertEquals ("{1}", set.match ("timeout").toString());
+    assertFalse (set.matchesAny ("all good"));
+  }
+
+
+  @Test
+  public void many()
+  {
+    // More patterns than fit in one chunk, with groups of their own.
+    List<String> patterns = new ArrayList<>();
+    for (int i = 0; i < 600; i++) {
+      patterns.add ("(x" + i + ")(y|z)+w");
+    }
+    RegexSet set = new RegexSet (patterns, REG_EXTENDED);
+    BitSet ids = new BitSet();
+    assertTrue (set.match ("x17yw x599zzw x5 x42y x420yzw", 0, ids));
+    assertEquals ("{17, 420, 599}", ids.toString());
+  }
+
+
+  @Test
+  public void fuzzy()
+  {
+    RegexSet set = new RegexSet (Arrays.asList ("kukka", "koira", "kissa"), REG_EXTENDED, AparamsBuilder.build1());
+    assertEquals ("{0, 2}", set.match ("kuukka kisa").toString());
+  }
+
+
+  @Test(expected = IllegalStateException.class)
+  public void close()
+  {
+    RegexSet set = new RegexSet (Arrays.asList ("kukka", "koira"), REG_EXTENDED);
+    assertTrue (set.matchesAny ("koira"));
+    set.close();
+    set.matchesAny ("koira");
+  }
+
+
+  @Test(expected = RegexSyntaxException.class)
+  public void syntaxError()
+  {
+    new RegexSet (Arrays.asList ("ok", "(bad"), REG_EXTENDED);
+  }
+}
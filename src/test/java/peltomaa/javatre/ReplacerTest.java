@@ -0,0 +1,91 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class ReplacerTest {
+  @Test
+  public void literal() throws Exception
+  {
+    RE re = RE.compile ("kukka", REG_LITERAL);
+    Replacer r = re.replacer ("<$0>\\$");
+    assertEquals ("a <kukka>$ b <kukka>$", r.replaceAll ("a kukka b kukka"));
+    assertEquals ("no match", r.replaceAll ("no match"));
+    assertEquals ("x<kukka>$", r.replaceAll ("xkukka", 0, new StringWriter()).toString());
+    assertEquals ("a KUKKA", re.matcher ("a kukka").replaceAll (m -> m.group().toUpperCase()));
+  }
+
+
+  @Test
+  public void groups()
+  {
+    RE re = RE.compile ("k(u+)(k)ka", REG_EXTENDED);
+    assertEquals ("[uu]k2 x [u]k2", re.replacer ("[$1]$22").replaceAll ("kuukka x kukka"));
+    assertEquals ("[uu] x [u]", re.matcher ("kuukka x kukka").replaceAll ("[$1]"));
+
+    Matcher m = re.matcher ("a kuukka b");
+    StringBuilder sb = new StringBuilder();
+    while (m.find()) {
+      m.appendReplacement (sb, "($0)");
+    }
+    m.appendTail (sb);
+    assertEquals ("a (kuukka) b", sb.toString());
+  }
+
+
+  @Test
+  public void missingGroup()
+  {
+    RE re = RE.compile ("(a)|b", REG_EXTENDED);
+    Matcher m = re.matcher ("b");
+    assertTrue (m.find());
+    assertNull (m.group (1));
+    assertEquals ("[null] [a]", re.matcher ("b a").replaceAll (r -> "[" + r.group (1) + "]"));
+
+    StringBuffer sb = new StringBuffer();
+    m = re.matcher ("a b");
+    while (m.find()) {
+      m.appendReplacement (sb, "<$1>");
+    }
+    m.appendTail (sb);
+    assertEquals ("<a> <>", sb.toString());
+  }
+
+
+  @Test (expected = IndexOutOfBoundsException.class)
+  public void noGroup()
+  {
+    RE.compile ("kukka", REG_LITERAL).replacer ("$1");
+  }
+
+
+  @Test (expected = IllegalArgumentException.class)
+  public void dollarAtEnd()
+  {
+    RE.compile ("kukka", REG_LITERAL).replacer ("x$");
+  }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+public class ResultsTest {
+  @Test
+  public void matcherResults()
+  {
+    RE re = RE.compile ("k(u+)kka", REG_EXTENDED);
+    Matcher m = re.matcher ("kukka kuukka kuuukka");
+    assertTrue (m.find());
+    List<Match> rest = m.results().collect (Collectors.toList());
+    assertEquals (2, rest.size());
+    assertEquals (6, rest.get (0).start());
+    assertEquals ("uu", rest.get (0).group (1));
+    assertEquals ("uuu", rest.get (1).group (1));
+  }
+
+
+  @Test
+  public void parallel()
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      sb.append ("line ").append (i).append ((i % 7 == 0) ? " kukka\n" : " kakku\n");
+    }
+    final String text = sb.toString();
+    RE re = RE.compile ("kukka", REG_LITERAL | REG_NEWLINE);
+    assertTrue (MatchSpliterator.splittable (re));
+
+    List<Integer> sequential = re.results (text).map (Match::start).collect (Collectors.toList());
+    List<Integer> parallel = re.results (text).parallel().map (Match::start).collect (Collectors.toList());
+    assertEquals ((20000 + 6) / 7, sequential.size());
+    assertEquals (sequential, parallel);
+    assertEquals ((int)sequential.get (0), re.results (text).findFirst().get().start());
+    assertTrue (new MatchSpliterator (re, text, 0, text.length(), 0).trySplit() != null);
+  }
+
+
+  @Test
+  public void notSplittable()
+  {
+    assertFalse (MatchSpliterator.splittable (RE.compile ("kukka", REG_LITERAL)));
+    assertFalse (MatchSpliterator.splittable (RE.compile ("a[[:space:]]b", REG_EXTENDED | REG_NEWLINE)));
+    assertFalse (MatchSpliterator.splittable (RE.compile ("kukka", REG_LITERAL | REG_NEWLINE, AparamsBuilder.build1())));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+Copyright (©) 2018 Hannu Väisänen
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package peltomaa.javatre;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+import static peltomaa.javatre.TRE.*;
+
+
+/** Compares splitting with {@code java.util.regex.Pattern}. */
+public class SplitTest {
+  private static final String[] INPUTS = {
+    "a;;b;c", "a;;b;c;;", ";a;b", ";", ";;", "abc", "a;b;c;d;e"
+  };
+
+
+  @Test
+  public void split()
+  {
+    RE re = RE.compile (";;", REG_LITERAL);
+    RE one = RE.compile (";", REG_LITERAL);
+    Pattern jdk = Pattern.compile (";", Pattern.LITERAL);
+    for (String s : INPUTS) {
+      for (int limit = -1; limit <= 4; limit++) {
+        assertArrayEquals (s + " " + limit, jdk.split (s, limit), one.split (s, limit, 0));
+      }
+    }
+    assertArrayEquals (new String[] {"a", "b;c", ""}, re.split ("a;;b;c;;", -1, 0));
+  }
+
+
+  @Test
+  public void splitAsStream()
+  {
+    RE re = RE.compile (";", REG_LITERAL);
+    Pattern jdk = Pattern.compile (";", Pattern.LITERAL);
+    for (String s : INPUTS) {
+      List<String> expected = jdk.splitAsStream (s).collect (Collectors.toList());
+      List<String> actual = re.splitAsStream (s).map (CharSequence::toString).collect (Collectors.toList());
+      assertEquals (s, expected, actual);
+    }
+    assertEquals (Arrays.asList ("a", "b"),
+                  re.splitAsStream ("a;b;c;d").limit (2).map (CharSequence::toString).collect (Collectors.toList()));
+  }
+
+
+  @Test
+  public void fuzzyDelimiter()
+  {
+    RE re = RE.compile ("<sep>", REG_LITERAL, AparamsBuilder.build1());
+    assertArrayEquals (new String[] {"a", "b", "c"}, re.split ("a<sep>b<sap>c", 0, 0));
+  }
+}